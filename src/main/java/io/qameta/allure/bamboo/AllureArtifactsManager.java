@@ -41,6 +41,7 @@ import com.atlassian.bamboo.plan.artifact.ArtifactDefinitionContextImpl;
 import com.atlassian.bamboo.plan.cache.ImmutableChain;
 import com.atlassian.bamboo.plugin.BambooPluginUtils;
 import com.atlassian.bamboo.resultsummary.BuildResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
 import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
 import com.atlassian.bamboo.security.SecureToken;
 import com.atlassian.plugin.ModuleDescriptor;
@@ -49,7 +50,14 @@ import com.atlassian.plugin.predicate.EnabledModulePredicate;
 import com.atlassian.plugin.predicate.ModuleOfClassPredicate;
 import com.atlassian.sal.api.ApplicationProperties;
 import com.atlassian.sal.api.UrlMode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import io.qameta.allure.bamboo.util.PackCache;
+import io.qameta.allure.bamboo.util.ReportManifest;
+import io.qameta.allure.bamboo.util.SignedUrls;
+import io.qameta.allure.bamboo.util.TinyLfuCache;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tools.ant.types.FileSet;
 import org.jetbrains.annotations.NotNull;
@@ -59,14 +67,24 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.ws.rs.core.UriBuilder;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -80,30 +98,41 @@ import static com.atlassian.bamboo.plan.PlanKeys.getPlanKey;
 import static com.atlassian.bamboo.plan.PlanKeys.getPlanResultKey;
 import static com.atlassian.bamboo.plugin.descriptor.ArtifactHandlerModuleDescriptor.ARTIFACT_HANDLERS_CONFIG_PREFIX;
 import static com.atlassian.bamboo.plugin.descriptor.ArtifactHandlerModuleDescriptorImpl.SHARED_NON_SHARED_ONOFF_OPTION_NAME;
-import static com.google.common.collect.Iterables.size;
+import static com.google.common.io.Files.createTempDir;
 import static com.google.common.io.Files.copy;
 import static io.qameta.allure.bamboo.AllureBuildResult.allureBuildResult;
 import static io.qameta.allure.bamboo.AllureBuildResult.fromCustomData;
+import static io.qameta.allure.bamboo.util.ReportManifest.MANIFEST_FILE;
 import static io.qameta.allure.bamboo.util.ExceptionUtil.stackTraceToString;
+import static java.lang.Integer.getInteger;
 import static java.lang.Integer.parseInt;
+import static java.lang.Long.getLong;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toMap;
 import static javax.ws.rs.core.UriBuilder.fromPath;
-import static org.apache.commons.io.FileUtils.deleteQuietly;
 import static org.apache.commons.io.FileUtils.forceMkdir;
-import static org.apache.commons.io.FileUtils.moveDirectory;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.codehaus.plexus.util.FileUtils.copyDirectory;
-import static org.codehaus.plexus.util.FileUtils.copyURLToFile;
 
-@SuppressWarnings({"ClassDataAbstractionCoupling", "PMD.AvoidInstantiatingObjectsInLoops", "PMD.GodClass"})
+@SuppressWarnings({"ClassDataAbstractionCoupling", "PMD.AvoidInstantiatingObjectsInLoops", "PMD.GodClass",
+        "PMD.TooManyMethods"})
 public class AllureArtifactsManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AllureArtifactsManager.class);
-    private static final String REPORTS_SUBDIR = "allure-reports";
     private static final String FAILED_TO_DOWNLOAD_ARTIFACTS_TO = "Failed to download artifacts to ";
     private static final String INDEX_HTML = "index.html";
-    private static final int SINGLE_NUMBER_OF_LIST_ELEMENTS = 1;
+    private static final String HISTORY_JSON_PATH = "history/history.json";
+    private static final long VIEW_MARK_INTERVAL_MS = MINUTES.toMillis(5);
+    private static final String PACK_URL_PREFIX = "jar:";
+    private static final String PACK_ENTRY_SEPARATOR = "!/";
+    private static final String FILE_URL_PREFIX = "file:";
+    private static final int MAX_LISTED_DIRECTORY_SIZE = getInteger("allure.report.list.directory.max", 200);
+    private static final long MIN_URL_VALIDITY_MS = SECONDS.toMillis(
+            getInteger("allure.artifact.url.min.validity.sec", 30));
 
     private final PluginAccessor pluginAccessor;
     private final ArtifactHandlersService artifactHandlersService;
@@ -112,6 +141,40 @@ public class AllureArtifactsManager {
     private final ArtifactLinkManager artifactLinkManager;
     private final ApplicationProperties appProperties;
     private final AllureSettingsManager settingsManager;
+    private final ArtifactHttpClient httpClient;
+    private final Cache<String, Long> viewMarks = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(VIEW_MARK_INTERVAL_MS, MILLISECONDS)
+            .build();
+    private final Cache<String, Path> historySources = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(getInteger("allure.history.source.cache.ttl.sec", 300), SECONDS)
+            .build();
+    private final Cache<String, ReportResolution> resolutions = CacheBuilder.newBuilder()
+            .maximumSize(getInteger("allure.report.cache.size", 1000))
+            .expireAfterWrite(getInteger("allure.report.cache.ttl.sec", 30), SECONDS)
+            .build();
+    private final Cache<String, String> artifactUrls = CacheBuilder.newBuilder()
+            .maximumSize(getInteger("allure.artifact.url.cache.size", 10_000))
+            .expireAfterWrite(getInteger("allure.artifact.url.cache.ttl.sec", 60), SECONDS)
+            .build();
+    private final Cache<String, Optional<ReportManifest>> manifests = CacheBuilder.newBuilder()
+            .maximumSize(getInteger("allure.report.manifest.cache.size", 100))
+            .expireAfterAccess(1, HOURS)
+            .build();
+    private final Cache<String, Boolean> viewableReports = CacheBuilder.newBuilder()
+            .maximumSize(getInteger("allure.report.viewable.cache.size", 10_000))
+            .expireAfterWrite(getInteger("allure.report.viewable.cache.ttl.sec", 60), SECONDS)
+            .build();
+    private final Cache<String, Optional<AllureBuildStatistics>> buildStatistics = CacheBuilder.newBuilder()
+            .maximumSize(getInteger("allure.statistics.cache.size", 100_000))
+            .expireAfterWrite(getInteger("allure.statistics.cache.ttl.sec", 300), SECONDS)
+            .build();
+    private final TinyLfuCache hotFiles = new TinyLfuCache(
+            getLong("allure.report.hot.cache.bytes", 64L * 1024 * 1024), 16 * 1024,
+            Boolean.getBoolean("allure.report.hot.cache.offheap"));
+    private final PackCache packCache = new PackCache(getInteger("allure.storage.pack.handles", 64));
+    private final ReportFileCoalescer coalescer;
 
     public AllureArtifactsManager(final PluginAccessor pluginAccessor,
                                   final ArtifactHandlersService artifactHandlersService,
@@ -119,7 +182,8 @@ public class AllureArtifactsManager {
                                   final ResultsSummaryManager resultsSummaryManager,
                                   final ArtifactLinkManager artifactLinkManager,
                                   final ApplicationProperties appProperties,
-                                  final AllureSettingsManager settingsManager) {
+                                  final AllureSettingsManager settingsManager,
+                                  final ArtifactHttpClient httpClient) {
         this.pluginAccessor = pluginAccessor;
         this.artifactHandlersService = artifactHandlersService;
         this.buildDefinitionManager = buildDefinitionManager;
@@ -127,6 +191,8 @@ public class AllureArtifactsManager {
         this.artifactLinkManager = artifactLinkManager;
         this.appProperties = appProperties;
         this.settingsManager = settingsManager;
+        this.httpClient = httpClient;
+        this.coalescer = new ReportFileCoalescer(httpClient);
     }
 
     /**
@@ -140,57 +206,370 @@ public class AllureArtifactsManager {
     Optional<String> getArtifactUrl(final String planKeyString,
                                     final String buildNumber,
                                     final String filePath) {
-        final BuildDefinition buildDefinition = buildDefinitionManager.getBuildDefinition(getPlanKey(planKeyString));
-        final Map<String, String> artifactConfig = getArtifactHandlersConfig(buildDefinition);
-        final PlanResultKey planResultKey = getPlanResultKey(planKeyString, parseInt(buildNumber));
-        return Optional.ofNullable(resultsSummaryManager.getResultsSummary(planResultKey))
-                .flatMap(rs -> getArtifactHandlerByClassName(
-                        fromCustomData(rs.getCustomBuildData()).getArtifactHandlerClass())
-                        .map(handler -> getArtifactUrl(planKeyString, buildNumber,
-                                filePath, artifactConfig, planResultKey, handler)
-                        )
-                );
+        return resolveReport(planKeyString, buildNumber)
+                .filter(ReportResolution::isHandlerFound)
+                .map(resolution -> {
+                    final ReportManifest manifest = getManifest(planKeyString, buildNumber, resolution).orElse(null);
+                    final String path = manifest == null ? filePath : manifest.resolve(filePath);
+                    if (path == null) {
+                        return null;
+                    }
+                    return resolution.isLocal()
+                            ? getLocalStorageURL(planKeyString, buildNumber, path)
+                            : getRemoteArtifactUrl(planKeyString, buildNumber, path, resolution, manifest);
+                });
+    }
+
+    /**
+     * Returns the manifest entry of the requested file of the report.
+     *
+     * @param planKeyString key for plan
+     * @param buildNumber   build number
+     * @param filePath      path of the artifact
+     * @return empty if the report has no manifest or no such file
+     */
+    Optional<ReportManifest.Entry> getManifestEntry(final String planKeyString,
+                                                    final String buildNumber,
+                                                    final String filePath) {
+        return resolveReport(planKeyString, buildNumber)
+                .filter(ReportResolution::isHandlerFound)
+                .flatMap(resolution -> getManifest(planKeyString, buildNumber, resolution))
+                .flatMap(manifest -> Optional.ofNullable(manifest.resolve(filePath)).map(manifest::getEntry));
     }
 
-    private String getArtifactUrl(final String planKeyString,
-                                  final String buildNumber,
-                                  final String filePath,
-                                  final Map<String, String> artifactConfig,
-                                  final PlanResultKey planResultKey,
-                                  final ArtifactHandler artifactHandler) {
-        if (isAgentArtifactHandler(artifactHandler)) {
-            return getLocalStorageURL(planKeyString, buildNumber, filePath);
+    /**
+     * Remote URLs are cached for a short time, as they can be signed and expire. A cached signed URL is not used
+     * anymore once it is about to expire, however long it has been cached. With a manifest, all the files
+     * of a small directory are listed at once, the rest of the files are listed one by one.
+     */
+    @Nullable
+    private String getRemoteArtifactUrl(final String planKeyString,
+                                        final String buildNumber,
+                                        final String filePath,
+                                        final ReportResolution resolution,
+                                        final @Nullable ReportManifest manifest) {
+        final String prefix = planKeyString + "/" + buildNumber + "/";
+        final String cached = getCachedArtifactUrl(prefix + filePath);
+        if (cached != null) {
+            return cached;
         }
-        final ArtifactDefinitionContextImpl artifactDef = getAllureArtifactDef();
+        if (manifest != null && resolution.getRootUrl() == null && resolution.getLinkProvider() != null
+                && manifest.getDirectorySize(filePath) <= MAX_LISTED_DIRECTORY_SIZE) {
+            cacheDirectoryUrls(prefix, ReportManifest.getDirectory(filePath), resolution.getLinkProvider());
+            final String listed = getCachedArtifactUrl(prefix + filePath);
+            if (listed != null) {
+                return listed;
+            }
+        }
+        final String url = getArtifactFile(filePath, resolution);
+        if (url != null) {
+            artifactUrls.put(prefix + filePath, url);
+        }
+        return url;
+    }
+
+    @Nullable
+    private String getCachedArtifactUrl(final String key) {
+        final String url = artifactUrls.getIfPresent(key);
+        final long expiresAt = url == null ? -1 : SignedUrls.getExpiresAt(url);
+        if (expiresAt >= 0 && expiresAt - MIN_URL_VALIDITY_MS < System.currentTimeMillis()) {
+            artifactUrls.invalidate(key);
+            return null;
+        }
+        return url;
+    }
+
+    private void cacheDirectoryUrls(final String prefix,
+                                    final String directory,
+                                    final ArtifactLinkDataProvider linkProvider) {
+        final String directoryPrefix = prefix + (directory.isEmpty() ? "" : directory + "/");
+        for (ArtifactFileData data : linkProvider.listObjects(directory)) {
+            final ArtifactFileData file = data instanceof TrampolineArtifactFileData
+                    ? ((TrampolineArtifactFileData) data).getDelegate() : data;
+            final String url = data instanceof TrampolineArtifactFileData ? file.getUrl() : getBambooArtifactUrl(file);
+            if (file.getFileType() == ArtifactFileData.FileType.REGULAR_FILE && url != null) {
+                artifactUrls.put(directoryPrefix + StringUtils.substringAfterLast("/" + file.getName(), "/"), url);
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest of the report once, the reports published before manifests were written have none.
+     * Files of the shared file system storage are addressed by their paths, so they need no manifest.
+     */
+    private Optional<ReportManifest> getManifest(final String planKeyString,
+                                                 final String buildNumber,
+                                                 final ReportResolution resolution) {
+        final String key = planKeyString + "/" + buildNumber;
+        final Optional<ReportManifest> cached = manifests.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (resolution.getRootUrl() != null) {
+            return Optional.empty();
+        }
+        final String url = resolution.isLocal()
+                ? getLocalStorageURL(planKeyString, buildNumber, MANIFEST_FILE)
+                : getArtifactFile(MANIFEST_FILE, resolution);
+        Optional<ReportManifest> manifest = Optional.empty();
+        if (url != null) {
+            try (InputStream input = openArtifact(url)) {
+                manifest = Optional.of(ReportManifest.read(input));
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                LOGGER.debug("Allure Report {} has no manifest", key);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read manifest of Allure Report {}", key, e);
+                return manifest;
+            }
+        }
+        manifests.put(key, manifest);
+        return manifest;
+    }
+
+    /**
+     * Returns the cache of the most requested files of the reports, keyed as {@link ReportFile#getKey()}.
+     *
+     * @return cache of report files
+     */
+    TinyLfuCache getHotFiles() {
+        return hotFiles;
+    }
+
+    /**
+     * Returns how the cache of the most requested files of the reports has been used since the start.
+     *
+     * @return statistics of the cache of report files
+     */
+    TinyLfuCache.Stats getHotFileStats() {
+        return hotFiles.getStats();
+    }
+
+    /**
+     * Returns the coalescer of the fetches of small remote report files, keyed as {@link ReportFile#getKey()}.
+     *
+     * @return coalescer of report files
+     */
+    ReportFileCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    boolean isRedirectEnabled() {
+        return settingsManager.getSettings().isRedirectEnabled();
+    }
 
-        return Optional.ofNullable(
-                        artifactHandler.getArtifactLinkDataProvider(
-                                mutableArtifact(planResultKey, artifactDef.getName()),
-                                configProvider(artifactConfig)
-                        ))
-                .map(lp -> getArtifactUrl(filePath, planResultKey, artifactDef, lp))
+    /**
+     * Resolves the state of the report and the way its files are served. Resolutions of the builds
+     * with a report are cached, so serving a file of the report takes a map lookup. Deletion of a build is not
+     * announced to the plugin, so the resolution is kept just long enough to cover the requests of one page load.
+     *
+     * @param planKeyString key for plan
+     * @param buildNumber   build number
+     * @return empty if there is no such build
+     */
+    Optional<ReportResolution> resolveReport(final String planKeyString,
+                                             final String buildNumber) {
+        final String key = planKeyString + "/" + buildNumber;
+        final ReportResolution cached = resolutions.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final PlanResultKey planResultKey = getPlanResultKey(planKeyString, parseInt(buildNumber));
+        final ResultsSummary summary = resultsSummaryManager.getResultsSummary(planResultKey);
+        if (summary == null) {
+            return Optional.empty();
+        }
+        final AllureBuildResult buildResult = fromCustomData(summary.getCustomBuildData());
+        final Optional<ArtifactHandler> handler = getArtifactHandlerByClassName(buildResult.getArtifactHandlerClass());
+        final boolean local = handler.map(this::isAgentArtifactHandler).orElse(false);
+        final ArtifactLinkDataProvider linkProvider = handler.filter(h -> !local)
+                .map(h -> getLinkProvider(planResultKey, h, getArtifactHandlersConfig(
+                        buildDefinitionManager.getBuildDefinition(getPlanKey(planKeyString)))))
                 .orElse(null);
+        final String rootUrl = linkProvider instanceof FileSystemArtifactLinkDataProvider
+                ? requireNonNull(linkProvider.getRootUrl()).replaceFirst("BASE_URL", getBaseUrl().build().toString())
+                : null;
+        final long lastModified = buildResult.getPublishedAt() > 0 ? buildResult.getPublishedAt()
+                : Optional.ofNullable(summary.getBuildCompletedDate()).map(Date::getTime).orElse(0L);
+        final ReportResolution resolution = new ReportResolution(buildResult, handler.isPresent(), local,
+                linkProvider, rootUrl, isReportEvicted(planKeyString, buildNumber), lastModified);
+        if (buildResult.hasInfo()) {
+            resolutions.put(key, resolution);
+        }
+        return Optional.of(resolution);
+    }
+
+    /**
+     * Drops the cached resolution of the report, e.g. when it is rebuilt or removed.
+     *
+     * @param planKeyString key for plan
+     * @param buildNumber   build number
+     */
+    void invalidateReport(final String planKeyString,
+                          final int buildNumber) {
+        final String key = planKeyString + "/" + buildNumber;
+        resolutions.invalidate(key);
+        viewableReports.invalidate(key);
+        buildStatistics.invalidate(key);
+        manifests.invalidate(key);
+        hotFiles.invalidateIf(file -> file.startsWith(key + "/"));
+        coalescer.invalidateIf(file -> file.startsWith(key + "/"));
+        artifactUrls.asMap().keySet().removeIf(url -> url.startsWith(key + "/"));
+    }
+
+    /**
+     * Returns whether the build has an Allure Report or the failure details of one to show.
+     * The answer is cached for a short time, as it is asked on every render of the build result pages.
+     *
+     * @param planKeyString key for plan
+     * @param buildNumber   build number
+     * @return true if the report tab of the build should be shown
+     */
+    boolean isReportViewable(final String planKeyString,
+                             final String buildNumber) {
+        final String key = planKeyString + "/" + buildNumber;
+        final Boolean cached = viewableReports.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        final ResultsSummary summary = resultsSummaryManager
+                .getResultsSummary(getPlanResultKey(planKeyString, parseInt(buildNumber)));
+        if (summary == null) {
+            return false;
+        }
+        final boolean viewable = isViewable(planKeyString, buildNumber, fromCustomData(summary.getCustomBuildData()))
+                && (summary.isFinished() || summary.isNotBuilt());
+        viewableReports.put(key, viewable);
+        return viewable;
+    }
+
+    /**
+     * Caches whether the report of the finished build is viewable, so its result pages need no lookup.
+     *
+     * @param planKeyString key for plan
+     * @param buildNumber   build number
+     * @param buildResult   result of the report written to the build
+     */
+    void updateReportViewable(final String planKeyString,
+                              final int buildNumber,
+                              final AllureBuildResult buildResult) {
+        final String build = String.valueOf(buildNumber);
+        viewableReports.put(planKeyString + "/" + build, isViewable(planKeyString, build, buildResult));
+    }
+
+    /**
+     * Returns the test statistics stored in the build when its report was published. They are cached,
+     * so dashboards polling the statistics of many builds do not query the database every time.
+     *
+     * @param planKeyString key for plan
+     * @param buildNumber   build number
+     * @return empty if there is no such build or it has no statistics
+     */
+    Optional<AllureBuildStatistics> getBuildStatistics(final String planKeyString,
+                                                       final int buildNumber) {
+        final String key = planKeyString + "/" + buildNumber;
+        final Optional<AllureBuildStatistics> cached = buildStatistics.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        final ResultsSummary summary = resultsSummaryManager
+                .getResultsSummary(getPlanResultKey(planKeyString, buildNumber));
+        final Optional<AllureBuildStatistics> statistics = Optional.ofNullable(summary)
+                .flatMap(s -> AllureBuildStatistics.fromCustomData(s.getCustomBuildData()));
+        buildStatistics.put(key, statistics);
+        return statistics;
+    }
+
+    private boolean isViewable(final String planKeyString,
+                               final String buildNumber,
+                               final AllureBuildResult buildResult) {
+        final boolean evicted = buildResult.isSuccess() && isReportEvicted(planKeyString, buildNumber);
+        return buildResult.hasInfo() && !evicted;
     }
 
-    private String getArtifactUrl(final String filePath,
-                                  final PlanResultKey planResultKey,
-                                  final ArtifactDefinitionContextImpl artifactDef,
-                                  final ArtifactLinkDataProvider linkProvider) {
+    @Nullable
+    private ArtifactLinkDataProvider getLinkProvider(final PlanResultKey planResultKey,
+                                                     final ArtifactHandler artifactHandler,
+                                                     final Map<String, String> artifactConfig) {
+        final ArtifactDefinitionContextImpl artifactDef = getAllureArtifactDef();
+        final ArtifactLinkDataProvider linkProvider = artifactHandler.getArtifactLinkDataProvider(
+                mutableArtifact(planResultKey, artifactDef.getName()),
+                configProvider(artifactConfig)
+        );
         if (linkProvider instanceof TrampolineUrlArtifactLinkDataProvider) {
             final TrampolineUrlArtifactLinkDataProvider urlLinkProvider =
                     (TrampolineUrlArtifactLinkDataProvider) linkProvider;
             urlLinkProvider.setPlanResultKey(planResultKey);
             urlLinkProvider.setArtifactName(artifactDef.getName());
         }
-        return getArtifactFile(filePath, linkProvider);
+        return linkProvider;
+    }
+
+    /**
+     * Checks whether the report of the build has been published with the history files.
+     * Only the build data and the storage are consulted, the files are neither downloaded nor parsed.
+     *
+     * @param planKey key for plan
+     * @param summary results of the build
+     * @return true if the history of the build can be copied
+     */
+    boolean hasHistory(final String planKey,
+                       final ResultsSummary summary) {
+        final AllureBuildResult result = fromCustomData(summary.getCustomBuildData());
+        final String buildNumber = String.valueOf(summary.getBuildNumber());
+        if (!result.isSuccess() || isReportEvicted(planKey, buildNumber)) {
+            return false;
+        }
+        return getArtifactHandlerByClassName(result.getArtifactHandlerClass())
+                .map(handler -> isAgentArtifactHandler(handler)
+                        ? hasLocalReportFile(planKey, buildNumber, HISTORY_JSON_PATH)
+                        : hasRemoteReportFile(getPlanResultKey(planKey, summary.getBuildNumber()), handler))
+                .orElse(false);
+    }
+
+    private boolean hasLocalReportFile(final String planKey,
+                                       final String buildNumber,
+                                       final String filePath) {
+        final LocalReportStorage storage = getLocalStorage();
+        final Path reportDir = storage.getReportDir(planKey, buildNumber);
+        if (reportDir.toFile().isDirectory()) {
+            return reportDir.resolve(filePath).toFile().isFile();
+        }
+        final Path pack = storage.getReportPack(planKey, buildNumber);
+        try {
+            return pack.toFile().isFile() && filePath.equals(packCache.resolveEntry(pack, filePath));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read Allure Report pack {}", pack, e);
+            return false;
+        }
+    }
+
+    private boolean hasRemoteReportFile(final PlanResultKey planResultKey,
+                                        final ArtifactHandler artifactHandler) {
+        final Map<String, String> artifactConfig = getArtifactHandlersConfig(
+                buildDefinitionManager.getBuildDefinition(planResultKey.getPlanKey()));
+        try {
+            return Optional.ofNullable(getLinkProvider(planResultKey, artifactHandler, artifactConfig))
+                    .map(lp -> lp.listObjects(HISTORY_JSON_PATH).iterator().hasNext())
+                    .orElse(false);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to list history of Allure Report {}", planResultKey, e);
+            return false;
+        }
     }
 
     @Nullable
     private String getLocalStorageURL(final String planKeyString,
                                       final String buildNumber,
                                       final String filePath) {
+        markReportViewed(planKeyString, buildNumber);
+        final LocalReportStorage storage = getLocalStorage();
+        final Path reportDir = storage.getReportDir(planKeyString, buildNumber);
+        final Path pack = storage.getReportPack(planKeyString, buildNumber);
+        if (!reportDir.toFile().isDirectory() && pack.toFile().isFile()) {
+            return getPackEntryURL(pack, filePath);
+        }
         try {
-            final File file = getLocalStoragePath(planKeyString, buildNumber).resolve(filePath).toFile();
+            final File file = reportDir.resolve(filePath).toFile();
             final String fullPath = (file.isDirectory())
                     ? new File(file, INDEX_HTML).getAbsolutePath() : file.getAbsolutePath();
             return new File(fullPath).toURI().toURL().toString();
@@ -200,6 +579,91 @@ public class AllureArtifactsManager {
         }
     }
 
+    @Nullable
+    private String getPackEntryURL(final Path pack,
+                                   final String filePath) {
+        try {
+            final String entry = packCache.resolveEntry(pack, filePath);
+            return entry == null ? null : PACK_URL_PREFIX + pack.toUri() + PACK_ENTRY_SEPARATOR + entry;
+        } catch (IOException e) {
+            LOGGER.error("Failed to read Allure Report pack {}", pack, e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens the artifact by the URL returned from {@link #getArtifactUrl(String, String, String)}.
+     * Entries of the report packs are read through the cache of open packs.
+     *
+     * @param artifactUrl URL of the artifact
+     * @return stream with the content of the artifact
+     * @throws IOException if the artifact cannot be opened
+     */
+    InputStream openArtifact(final String artifactUrl) throws IOException {
+        return openArtifact(artifactUrl, 0);
+    }
+
+    /**
+     * Opens the artifact at the given offset. Files of the local storage are read from the offset,
+     * entries of the packs are skipped up to it.
+     *
+     * @param artifactUrl URL of the artifact, must be local if the offset is not zero
+     * @param offset      position to start reading from
+     * @return stream with the content of the artifact
+     * @throws IOException if the artifact cannot be opened
+     */
+    InputStream openArtifact(final String artifactUrl,
+                             final long offset) throws IOException {
+        if (artifactUrl.startsWith(PACK_URL_PREFIX)) {
+            final InputStream input = packCache.openEntry(getPackPath(artifactUrl), getPackEntryName(artifactUrl));
+            IOUtils.skipFully(input, offset);
+            return input;
+        }
+        if (artifactUrl.startsWith(FILE_URL_PREFIX)) {
+            final FileChannel channel = FileChannel.open(Paths.get(URI.create(artifactUrl)), StandardOpenOption.READ);
+            channel.position(offset);
+            return Channels.newInputStream(channel);
+        }
+        return httpClient.openStream(artifactUrl);
+    }
+
+    /**
+     * Returns the size of an artifact of the local storage.
+     *
+     * @param artifactUrl URL of the artifact
+     * @return size of the artifact or -1 if it is not local
+     * @throws IOException if the artifact cannot be read
+     */
+    long getLocalArtifactSize(final String artifactUrl) throws IOException {
+        if (artifactUrl.startsWith(PACK_URL_PREFIX)) {
+            return packCache.getEntrySize(getPackPath(artifactUrl), getPackEntryName(artifactUrl));
+        }
+        if (artifactUrl.startsWith(FILE_URL_PREFIX)) {
+            return Files.size(Paths.get(URI.create(artifactUrl)));
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the file of the local storage the artifact URL refers to.
+     *
+     * @param artifactUrl URL of the artifact
+     * @return the file or null if the artifact is not a plain file of the local storage
+     */
+    @Nullable
+    Path getLocalArtifactFile(final String artifactUrl) {
+        return artifactUrl.startsWith(FILE_URL_PREFIX) ? Paths.get(URI.create(artifactUrl)) : null;
+    }
+
+    private static Path getPackPath(final String packEntryUrl) {
+        final int separator = packEntryUrl.indexOf(PACK_ENTRY_SEPARATOR);
+        return Paths.get(URI.create(packEntryUrl.substring(PACK_URL_PREFIX.length(), separator)));
+    }
+
+    private static String getPackEntryName(final String packEntryUrl) {
+        return packEntryUrl.substring(packEntryUrl.indexOf(PACK_ENTRY_SEPARATOR) + PACK_ENTRY_SEPARATOR.length());
+    }
+
     /**
      * Downloads all artifacts of a build chain to a temporary directory.
      *
@@ -272,8 +736,8 @@ public class AllureArtifactsManager {
 
                     if (delegateData.getFileType().equals(ArtifactFileData.FileType.REGULAR_FILE)) {
                         final String fileName = Paths.get(delegateData.getName()).toFile().getName();
-                        copyURLToFile(new URL(requireNonNull(delegateData.getUrl())),
-                                Paths.get(tempDir.getPath(), fileName).toFile());
+                        httpClient.download(new URL(requireNonNull(delegateData.getUrl())),
+                                Paths.get(tempDir.getPath(), fileName));
                     } else {
                         downloadAllArtifactsTo(dataProvider, tempDir, trampolineData.getTag());
                     }
@@ -305,21 +769,25 @@ public class AllureArtifactsManager {
             sourceFileSet.setDir(reportDir);
             sourceFileSet.setIncludes(artifact.getCopyPattern());
             final Map<String, String> artifactConfig = getArtifactHandlersConfig(chain.getBuildDefinition());
+            final String planKey = chain.getPlanKey().getKey();
+            final boolean withHistory = new File(reportDir, HISTORY_JSON_PATH).isFile();
+            writeManifest(reportDir);
 
             for (final ArtifactHandler artifactHandler : getArtifactHandlers()) {
                 if (!artifactHandler.canHandleArtifact(artifact, artifactConfig)) {
                     continue;
                 }
                 if (isAgentArtifactHandler(artifactHandler)) {
-                    final String planKey = chain.getPlanKey().getKey();
                     final String buildNumber = String.valueOf(summary.getBuildNumber());
-                    final File destDir = getLocalStoragePath(planKey, buildNumber).toFile();
-                    if (destDir.exists()) {
-                        deleteQuietly(destDir);
+                    final LocalReportStorage storage = getLocalStorage();
+                    storage.publish(reportDir, planKey, buildNumber);
+                    packCache.invalidate(storage.getReportPack(planKey, buildNumber));
+                    if (withHistory) {
+                        indexHistory(planKey, summary.getBuildNumber());
                     }
-                    moveDirectory(reportDir, destDir);
                     return Optional.of(allureBuildResult(true, null)
-                            .withHandlerClass(artifactHandler.getClass().getName()));
+                            .withHandlerClass(artifactHandler.getClass().getName())
+                            .withPublishedAt(System.currentTimeMillis()));
                 }
                 final ArtifactPublishingConfig artifactPublishingConfig
                         = new ArtifactPublishingConfig(sourceFileSet, artifactConfig);
@@ -341,8 +809,12 @@ public class AllureArtifactsManager {
                         });
                 if (publishingResult != null) {
                     publishingResult.setArtifactHandlerKey(artifactHandler.getModuleDescriptor().getCompleteKey());
+                    if (withHistory && publishingResult.isSuccessful()) {
+                        indexHistory(planKey, summary.getBuildNumber());
+                    }
                     return Optional.of(allureBuildResult(publishingResult.isSuccessful(), null)
-                            .withHandlerClass(artifactHandler.getClass().getName()));
+                            .withHandlerClass(artifactHandler.getClass().getName())
+                            .withPublishedAt(System.currentTimeMillis()));
                 }
             }
         } catch (Exception e) {
@@ -353,8 +825,165 @@ public class AllureArtifactsManager {
         return Optional.empty();
     }
 
-    private Path getLocalStoragePath(final String planKey, final String buildNumber) {
-        return Paths.get(settingsManager.getSettings().getLocalStoragePath(), REPORTS_SUBDIR, planKey, buildNumber);
+    private static void writeManifest(final File reportDir) {
+        try {
+            ReportManifest.write(reportDir.toPath());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write manifest of Allure Report {}, its files will be looked up", reportDir, e);
+        }
+    }
+
+    /**
+     * Creates a directory to generate a report into. It is placed in the work area of the local storage,
+     * so that the report can be published there by renaming the directory.
+     *
+     * @return directory for a report
+     */
+    File createReportDir() {
+        try {
+            return getLocalStorage().createWorkDir().resolve("report").toFile();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to create work directory in the local storage, using temporary directory", e);
+            return new File(createTempDir(), "report");
+        }
+    }
+
+    /**
+     * Deletes the work directory a report has been generated in. Its files may already be linked
+     * to the blob store by a failed publish, so the blobs are released as well.
+     *
+     * @param workDir work directory returned by {@link #createReportDir()} as the parent of the report
+     */
+    void deleteWorkDir(final File workDir) {
+        getLocalStorage().getBlobStore().delete(workDir.toPath());
+    }
+
+    LocalReportStorage getLocalStorage() {
+        return new LocalReportStorage(settingsManager.getSettings().getLocalStoragePath());
+    }
+
+    HistoryStore getHistoryStore() {
+        return new HistoryStore(settingsManager.getSettings().getLocalStoragePath());
+    }
+
+    StaticAssetStore getStaticAssetStore() {
+        return new StaticAssetStore(settingsManager.getSettings().getLocalStoragePath());
+    }
+
+    /**
+     * Returns the version of the history store to take the history from. A plan branch without history
+     * of its own inherits the latest history of its master plan, the resolved source is cached
+     * until a new history is saved, or for a few minutes, so that a source removed with its build is not kept long.
+     *
+     * @param chain       plan or plan branch
+     * @param buildNumber number of the build looking for history
+     * @return the version of the history store or empty if there is no history yet
+     * @throws IOException if the history store cannot be read
+     */
+    Optional<Path> resolveHistorySource(final @NotNull ImmutableChain chain,
+                                        final int buildNumber) throws IOException {
+        final String planKey = chain.getPlanKey().getKey();
+        final HistoryStore historyStore = getHistoryStore();
+        final Optional<Path> own = historyStore.getLatestVersion(planKey, buildNumber);
+        if (own.isPresent() || !chain.hasMaster()) {
+            return own;
+        }
+        final Path cached = historySources.getIfPresent(planKey);
+        if (cached != null && cached.toFile().isDirectory()) {
+            return Optional.of(cached);
+        }
+        final Optional<Path> inherited = historyStore.getLatestVersion(
+                chain.getMaster().getPlanKey().getKey(), Integer.MAX_VALUE);
+        inherited.ifPresent(version -> historySources.put(planKey, version));
+        return inherited;
+    }
+
+    void saveHistory(final String planKey,
+                     final int buildNumber,
+                     final Path historyDir) throws IOException {
+        getHistoryStore().save(planKey, buildNumber, historyDir);
+        historySources.invalidate(planKey);
+        historySources.asMap().values()
+                .removeIf(version -> planKey.equals(version.getParent().getFileName().toString()));
+    }
+
+    /**
+     * Checks whether the report of the build has been removed from the local storage by the retention policy.
+     *
+     * @param planKey     key for plan
+     * @param buildNumber build number
+     * @return true if the report has been evicted
+     */
+    boolean isReportEvicted(final String planKey,
+                            final String buildNumber) {
+        return getLocalStorage().isEvicted(planKey, buildNumber);
+    }
+
+    boolean evictReport(final String planKey,
+                        final int buildNumber,
+                        final long publishedAt) throws IOException {
+        final LocalReportStorage storage = getLocalStorage();
+        if (!storage.evict(planKey, String.valueOf(buildNumber), publishedAt)) {
+            return false;
+        }
+        storage.invalidateHistoryPointer(planKey, buildNumber);
+        invalidateReport(planKey, buildNumber);
+        packCache.invalidate(storage.getReportPack(planKey, String.valueOf(buildNumber)));
+        viewMarks.invalidate(planKey + "/" + buildNumber);
+        return true;
+    }
+
+    /**
+     * Returns the build the history index of the plan points to, if its report still has history.
+     * An outdated pointer, e.g. to a deleted build, is dropped.
+     *
+     * @param planKey     key for plan
+     * @param buildNumber number of the build looking for history
+     * @return the latest build before the given one with history or empty if it is not known
+     */
+    Optional<Integer> getIndexedHistoryBuild(final String planKey,
+                                             final int buildNumber) {
+        final LocalReportStorage storage = getLocalStorage();
+        final Optional<Integer> indexed = storage.getHistoryPointer(planKey)
+                .filter(build -> build < buildNumber);
+        if (!indexed.isPresent()) {
+            return Optional.empty();
+        }
+        final ResultsSummary summary = resultsSummaryManager.getResultsSummary(
+                getPlanResultKey(planKey, indexed.get()));
+        if (summary != null && hasHistory(planKey, summary)) {
+            return indexed;
+        }
+        try {
+            storage.invalidateHistoryPointer(planKey, indexed.get());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to invalidate history index of {}", planKey, e);
+        }
+        return Optional.empty();
+    }
+
+    void indexHistory(final String planKey,
+                      final int buildNumber) {
+        try {
+            getLocalStorage().updateHistoryPointer(planKey, buildNumber);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update history index of {}", planKey, e);
+        }
+    }
+
+    boolean packReport(final String planKey,
+                       final int buildNumber,
+                       final long publishedAt) throws IOException {
+        return getLocalStorage().pack(planKey, String.valueOf(buildNumber), publishedAt);
+    }
+
+    private void markReportViewed(final String planKey,
+                                  final String buildNumber) {
+        final String key = planKey + "/" + buildNumber;
+        if (viewMarks.getIfPresent(key) == null) {
+            viewMarks.put(key, System.currentTimeMillis());
+            getLocalStorage().markViewed(planKey, buildNumber);
+        }
     }
 
     private void logAndThrow(final Exception e,
@@ -366,27 +995,29 @@ public class AllureArtifactsManager {
     @SuppressWarnings("PMD.CognitiveComplexity")
     @Nullable
     private String getArtifactFile(final String filePath,
-                                   final ArtifactLinkDataProvider linkProvider) {
+                                   final ReportResolution resolution) {
         final String fixedFilePath = filePath.replaceFirst("^/", "");
-        if (linkProvider instanceof FileSystemArtifactLinkDataProvider) {
-            return requireNonNull(linkProvider.getRootUrl())
-                    .replaceFirst("BASE_URL", getBaseUrl().build().toString())
+        final ArtifactLinkDataProvider linkProvider = resolution.getLinkProvider();
+        if (resolution.getRootUrl() != null) {
+            return resolution.getRootUrl()
                     .replace(INDEX_HTML, isEmpty(fixedFilePath) ? INDEX_HTML : fixedFilePath);
-        } else {
-            final Iterable<ArtifactFileData> datas = linkProvider.listObjects(fixedFilePath);
-            if (size(datas) == SINGLE_NUMBER_OF_LIST_ELEMENTS) {
-                ArtifactFileData data = datas.iterator().next();
-                if (data instanceof TrampolineArtifactFileData) {
-                    final TrampolineArtifactFileData trampolineData = (TrampolineArtifactFileData) data;
-                    data = trampolineData.getDelegate();
-                    if (data.getFileType().equals(ArtifactFileData.FileType.REGULAR_FILE)) {
-                        return data.getUrl();
-                    }
-                } else {
-                    return getBambooArtifactUrl(data);
+        } else if (linkProvider != null) {
+            final Iterator<ArtifactFileData> datas = linkProvider.listObjects(fixedFilePath).iterator();
+            if (!datas.hasNext()) {
+                return null;
+            }
+            ArtifactFileData data = datas.next();
+            if (datas.hasNext()) {
+                return getArtifactFile(INDEX_HTML, resolution);
+            }
+            if (data instanceof TrampolineArtifactFileData) {
+                final TrampolineArtifactFileData trampolineData = (TrampolineArtifactFileData) data;
+                data = trampolineData.getDelegate();
+                if (data.getFileType().equals(ArtifactFileData.FileType.REGULAR_FILE)) {
+                    return data.getUrl();
                 }
-            } else if (size(datas) > SINGLE_NUMBER_OF_LIST_ELEMENTS) {
-                return getArtifactFile(INDEX_HTML, linkProvider);
+            } else {
+                return getBambooArtifactUrl(data);
             }
         }
         return null;
@@ -27,41 +27,53 @@ import com.atlassian.bamboo.v2.build.BaseConfigurablePlugin;
 import com.atlassian.spring.container.ContainerManager;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.qameta.allure.bamboo.ArtifactHttpClient.Response;
 import io.qameta.allure.bamboo.info.AddExecutorInfo;
 import io.qameta.allure.bamboo.info.allurewidgets.summary.Summary;
-import io.qameta.allure.bamboo.util.Downloader;
 import io.qameta.allure.bamboo.util.FileStringReplacer;
+import io.qameta.allure.bamboo.util.HistoryCompactor;
 import io.qameta.allure.bamboo.util.ZipUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 
 import static com.google.common.io.Files.createTempDir;
 import static io.qameta.allure.bamboo.AllureBuildResult.allureBuildResult;
 import static io.qameta.allure.bamboo.util.ExceptionUtil.stackTraceToString;
+import static java.lang.Integer.getInteger;
 import static java.lang.String.format;
-import static java.nio.file.Files.createTempFile;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.copyDirectory;
 import static org.apache.commons.io.FileUtils.deleteQuietly;
-import static org.codehaus.plexus.util.FileUtils.copyDirectory;
 
 @SuppressWarnings("ConstantConditions")
 public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements PostChainAction {
@@ -69,6 +81,10 @@ public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements
     private static final Logger LOGGER = LoggerFactory.getLogger(AllureBuildCompleteAction.class);
     private static final String HISTORY_JSON = "history.json";
     private static final String HISTORY = "history";
+    private static final String METADATA_DIR = "allure-metadata";
+    private static final String REPORT_HISTORY_DIR = "allure-report-history";
+    private static final int HISTORY_TIMEOUT_MS = (int) SECONDS.toMillis(
+            getInteger("allure.history.timeout.sec", 30));
 
     private static final List<String> HISTORY_FILES = Arrays.asList(HISTORY_JSON,
             "history-trend.json", "categories-trend.json", "duration-trend.json");
@@ -79,18 +95,21 @@ public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements
     private final AllureArtifactsManager artifactsManager;
     private final BambooExecutablesManager executablesManager;
     private final ResultsSummaryManager resultsSummaryManager;
+    private final ArtifactHttpClient httpClient;
     private final AdministrationConfiguration adminConfiguration;
 
     public AllureBuildCompleteAction(final AllureExecutableProvider allureExecutable,
                                      final AllureSettingsManager settingsManager,
                                      final AllureArtifactsManager artifactsManager,
                                      final BambooExecutablesManager executablesManager,
-                                     final ResultsSummaryManager resultsSummaryManager) {
+                                     final ResultsSummaryManager resultsSummaryManager,
+                                     final ArtifactHttpClient httpClient) {
         this.allureExecutable = allureExecutable;
         this.settingsManager = settingsManager;
         this.artifactsManager = artifactsManager;
         this.executablesManager = executablesManager;
         this.resultsSummaryManager = resultsSummaryManager;
+        this.httpClient = httpClient;
         this.adminConfiguration = (AdministrationConfiguration) ContainerManager
                 .getComponent("administrationConfiguration");
     }
@@ -110,7 +129,7 @@ public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements
             return;
         }
         final File artifactsTempDir = createTempDir();
-        final File allureReportDir = new File(createTempDir(), "report");
+        final File allureReportDir = artifactsManager.createReportDir();
         final Map<String, String> customBuildData = chainResultsSummary.getCustomBuildData();
         try {
 
@@ -136,36 +155,75 @@ public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements
                         .dumpToCustomData(customBuildData);
             } else {
                 LOGGER.info("Starting allure generate into {} for {}", allureReportDir.getPath(), chain.getName());
-                prepareResults(artifactsPaths.stream().map(Path::toFile).collect(toList()), chain, chainExecution);
+                final Path metadataDir = artifactsTempDir.toPath().resolve(METADATA_DIR);
+                prepareResults(artifactsPaths.stream().map(Path::toFile).collect(toList()), metadataDir,
+                        chain, chainExecution);
+                if (buildConfig.isHistoryCompactionEnabled()) {
+                    new HistoryCompactor(buildConfig.getHistoryMaxItems(), buildConfig.getHistoryMaxAge(),
+                            buildConfig.getHistoryMaxTrend())
+                            .compact(metadataDir.resolve(HISTORY), chainExecution.getPlanResultKey().getBuildNumber());
+                }
 
                 // Setting the new logo in the allure libraries before generate the report.
                 if (globalConfig.isCustomLogoEnabled()) {
                     allureTmp.setCustomLogo(buildConfig.getCustomLogoUrl());
                 }
-                allureTmp.generate(artifactsPaths, allureReportDir.toPath());
+                final List<Path> sourceDirs = new ArrayList<>(artifactsPaths);
+                if (Files.isDirectory(metadataDir)) {
+                    sourceDirs.add(metadataDir);
+                }
+                allureTmp.generate(sourceDirs, allureReportDir.toPath());
+                final Path reportHistoryDir = stageHistory(allureReportDir, artifactsTempDir);
                 // Setting report name
-                this.finalizeReport(allureReportDir,
+                final Summary summary = this.finalizeReport(allureReportDir,
                         chainExecution.getPlanResultKey().getBuildNumber(), chain.getBuildName());
+                AllureBuildStatistics.fromSummary(summary).dumpToCustomData(customBuildData);
 
                 // Create an exportable zip with the report
                 ZipUtil.zipFolder(allureReportDir.toPath(), allureReportDir.toPath().resolve("report.zip"));
+                shareStaticAssets(allureReportDir, executable);
 
                 LOGGER.info("Allure has been generated successfully for {}", chain.getName());
-                artifactsManager.uploadReportArtifacts(chain, chainResultsSummary, allureReportDir)
-                        .ifPresent(result -> result.dumpToCustomData(customBuildData));
+                final Optional<AllureBuildResult> result = artifactsManager.uploadReportArtifacts(
+                        chain, chainResultsSummary, allureReportDir);
+                result.ifPresent(published -> published.dumpToCustomData(customBuildData));
+                if (result.filter(AllureBuildResult::isSuccess).isPresent()) {
+                    saveHistory(reportHistoryDir, chain.getPlanKey().getKey(),
+                            chainExecution.getPlanResultKey().getBuildNumber());
+                }
             }
         } catch (Exception e) {
             LOGGER.error("Failed to build allure report for {}", chain.getName(), e);
             allureBuildResult(false, stackTraceToString(e)).dumpToCustomData(customBuildData);
         } finally {
             deleteQuietly(artifactsTempDir);
-            deleteQuietly(allureReportDir);
+            artifactsManager.deleteWorkDir(allureReportDir.getParentFile());
+            artifactsManager.invalidateReport(chain.getPlanKey().getKey(),
+                    chainExecution.getPlanResultKey().getBuildNumber());
+            artifactsManager.updateReportViewable(chain.getPlanKey().getKey(),
+                    chainExecution.getPlanResultKey().getBuildNumber(),
+                    AllureBuildResult.fromCustomData(customBuildData));
+        }
+    }
+
+    /**
+     * Points the report to the UI assets shared by all the reports of the same Allure executable,
+     * so browsers download them once. The exportable zip is created before and keeps its own assets.
+     */
+    private void shareStaticAssets(final @NotNull File allureReportDir,
+                                   final @NotNull String executable) {
+        final String label = executable.replaceAll("[^\\w.-]", "_");
+        final String urlPrefix = StringUtils.removeEnd(getBambooBasePath(), "/") + AllureStaticServlet.URL_PATH;
+        try {
+            artifactsManager.getStaticAssetStore().share(allureReportDir.toPath(), label, urlPrefix);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to share static assets of Allure Report {}, it keeps its own", allureReportDir, e);
         }
     }
 
-    private void finalizeReport(final @NotNull File allureReportDir,
-                                final int buildNumber,
-                                final String buildName) throws IOException {
+    private Summary finalizeReport(final @NotNull File allureReportDir,
+                                   final int buildNumber,
+                                   final String buildName) throws IOException {
 
         // Update Report Name (It is the way now)
         final Path widgetsJsonPath = Paths.get(allureReportDir.getAbsolutePath())
@@ -191,91 +249,157 @@ public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements
                         Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.COMMENTS),
                 format("<title> Build %s - %s </title>", buildNumber, buildName)
         );
+        return summary;
     }
 
     private void prepareResults(final List<File> artifactsTempDirs,
+                                final Path metadataDir,
                                 final @NotNull ImmutableChain chain,
                                 final @NotNull ChainExecution chainExecution) {
-        copyHistory(artifactsTempDirs, chain.getPlanKey().getKey(), chainExecution.getPlanResultKey().getBuildNumber());
+        copyHistory(metadataDir.resolve(HISTORY), chain, chainExecution.getPlanResultKey().getBuildNumber());
         addExecutorInfo(artifactsTempDirs, chain, chainExecution.getPlanResultKey().getBuildNumber());
     }
 
     /**
-     * Write the history file to results directory.
+     * Write the history files once into the history directory of the metadata input of the report.
+     * The history is taken from the history store of the plan and falls back to the report
+     * of the last build with history.
      */
-    @SuppressWarnings("UnstableApiUsage")
-    private void copyHistory(final @NotNull List<File> artifactsTempDirs,
-                             final String planKey,
+    private void copyHistory(final Path historyDir,
+                             final @NotNull ImmutableChain chain,
                              final int buildNumber) {
-        final Path tmpDirToDownloadHistory = createTempDir().toPath();
+        final String planKey = chain.getPlanKey().getKey();
+        if (linkStoredHistory(historyDir, chain, buildNumber)) {
+            return;
+        }
         getLastBuildNumberWithHistory(planKey, buildNumber)
-                .ifPresent(buildId -> copyHistoryFiles(planKey, tmpDirToDownloadHistory, buildId));
-        artifactsTempDirs.forEach(artifactsTempDir -> {
-            try {
-                copyDirectory(tmpDirToDownloadHistory.toFile(), artifactsTempDir.toPath().resolve(HISTORY).toFile());
-            } catch (IOException e) {
-                LOGGER.error("Failed to copy history files from temp directory into artifacts directory", e);
+                .ifPresent(buildId -> copyHistoryFiles(planKey, historyDir, buildId));
+    }
+
+    private boolean linkStoredHistory(final Path historyDir,
+                                      final @NotNull ImmutableChain chain,
+                                      final int buildNumber) {
+        try {
+            final Optional<Path> version = artifactsManager.resolveHistorySource(chain, buildNumber);
+            if (version.isPresent()) {
+                artifactsManager.getHistoryStore().linkInto(version.get(), historyDir);
+                return true;
             }
-        });
-        deleteQuietly(tmpDirToDownloadHistory.toFile());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to take history of {} from the history store", chain.getPlanKey(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Copies the history generated with the report aside, the report directory is moved away when published.
+     *
+     * @return the copy of the history or null if the report has no history
+     */
+    @Nullable
+    private Path stageHistory(final @NotNull File allureReportDir,
+                              final @NotNull File artifactsTempDir) {
+        final Path historyDir = allureReportDir.toPath().resolve(HISTORY);
+        if (!Files.isDirectory(historyDir)) {
+            return null;
+        }
+        final Path stagedDir = artifactsTempDir.toPath().resolve(REPORT_HISTORY_DIR);
+        try {
+            copyDirectory(historyDir.toFile(), stagedDir.toFile());
+            return stagedDir;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to copy history of Allure Report {}", allureReportDir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the history of a published report into the history store, so a report which failed to publish
+     * never becomes the history source of the next builds.
+     */
+    private void saveHistory(final @Nullable Path historyDir,
+                             final String planKey,
+                             final int buildNumber) {
+        if (historyDir == null) {
+            return;
+        }
+        try {
+            artifactsManager.saveHistory(planKey, buildNumber, historyDir);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save history of {} into the history store", planKey, e);
+        }
     }
 
+    /**
+     * Fetches the history files in parallel. The history is dropped if any of its files cannot be fetched
+     * in time, so the report is never generated from a partial history. Files the source report does not have
+     * are skipped, as older reports lack some of the trends.
+     */
     private void copyHistoryFiles(final String planKey,
                                   final Path historyDir,
                                   final Integer buildNumber) {
-        HISTORY_FILES.forEach(historyFile ->
-                copyArtifactToHistoryFolder(historyDir, historyFile, planKey, buildNumber)
-        );
+        final ExecutorService executor = Executors.newFixedThreadPool(HISTORY_FILES.size());
+        try {
+            Files.createDirectories(historyDir);
+            final CompletableFuture<?>[] downloads = HISTORY_FILES.stream()
+                    .map(historyFile -> CompletableFuture.runAsync(() ->
+                            copyArtifactToHistoryFolder(historyDir, historyFile, planKey, buildNumber), executor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(downloads).get(HISTORY_TIMEOUT_MS, MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deleteQuietly(historyDir.toFile());
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            LOGGER.error("Failed to fetch history files of {}-{}", planKey, buildNumber, e);
+            deleteQuietly(historyDir.toFile());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     private Optional<Integer> getLastBuildNumberWithHistory(final String planKey,
                                                             final int buildNumber) {
+        final Optional<Integer> indexed = artifactsManager.getIndexedHistoryBuild(planKey, buildNumber);
+        if (indexed.isPresent()) {
+            return indexed;
+        }
         int currentBuild = buildNumber;
+        ResultsSummary lastBuild;
         do {
-            final ResultsSummary lastBuild = resultsSummaryManager.findLastBuildResultBefore(planKey, currentBuild);
+            lastBuild = resultsSummaryManager.findLastBuildResultBefore(planKey, currentBuild);
             if (Objects.isNull(lastBuild)) {
                 return Optional.empty();
             }
             currentBuild = lastBuild.getBuildNumber();
-        } while (!historyArtifactExists(planKey, currentBuild));
+        } while (!artifactsManager.hasHistory(planKey, lastBuild));
+        artifactsManager.indexHistory(planKey, currentBuild);
         return Optional.of(currentBuild);
     }
 
-    private boolean historyArtifactExists(final String planKey,
-                                          final int buildId) {
-        final String artifactUrl = getHistoryArtifactUrl(HISTORY_JSON, planKey, buildId);
-        final ObjectMapper mapper = new JsonMapper();
-        try {
-            final Path historyTmpFile = createTempFile(HISTORY, ".json");
-            Downloader.download(new URL(artifactUrl), historyTmpFile);
-            mapper.readValue(historyTmpFile.toFile(), Object.class);
-            return true;
-        } catch (Exception e) {
-            LOGGER.info("Cannot connect to artifact or the artifact is not valid {}.", artifactUrl, e);
-            return false;
-        }
-    }
-
     private void copyArtifactToHistoryFolder(final Path historyFolder,
                                              final String fileName,
                                              final String planKey,
                                              final int buildId) {
-        try (InputStream inputStream = getArtifactContent(fileName, planKey, buildId)) {
-            Files.createDirectories(historyFolder);
-            Files.copy(inputStream, historyFolder.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+        final Path partFile = historyFolder.resolve(fileName + ".part");
+        final String url = getHistoryArtifactUrl(fileName, planKey, buildId);
+        try (Response response = httpClient.execute(url, "GET", Collections.emptyMap())) {
+            if (response.getStatus() == HttpURLConnection.HTTP_NOT_FOUND) {
+                LOGGER.debug("History of {}-{} has no file {}", planKey, buildId, fileName);
+                return;
+            }
+            if (response.getStatus() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new IOException("Server answered " + response.getStatus() + " for " + url);
+            }
+            try (InputStream inputStream = response.getBody()) {
+                Files.copy(inputStream, partFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(partFile, historyFolder.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
-            LOGGER.error("Could not copy file {}", fileName);
+            deleteQuietly(partFile.toFile());
+            throw new UncheckedIOException("Could not copy history file " + fileName, e);
         }
     }
 
-    private InputStream getArtifactContent(final String fileName,
-                                           final String planKey,
-                                           final int buildId) throws IOException {
-        final URL artifactUrl = new URL(getHistoryArtifactUrl(fileName, planKey, buildId));
-        final URLConnection uc = artifactUrl.openConnection();
-        return uc.getInputStream();
-    }
-
     @NotNull
     private String getHistoryArtifactUrl(final String fileName,
                                          final String planKey,
@@ -309,4 +433,16 @@ public class AllureBuildCompleteAction extends BaseConfigurablePlugin implements
         }
         return "";
     }
+
+    /**
+     * Returns the path of the base url of bamboo server, so links work on every host name of the server.
+     */
+    @NotNull
+    private String getBambooBasePath() {
+        try {
+            return StringUtils.defaultString(URI.create(getBambooBaseUrl()).getRawPath());
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
 }
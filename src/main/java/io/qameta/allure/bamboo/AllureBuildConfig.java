@@ -25,10 +25,14 @@ import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_ARTIFACT_NAM
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_ENABLED;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_EXECUTABLE;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_FAILED_ONLY;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_HISTORY_MAX_AGE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_HISTORY_MAX_ITEMS;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_HISTORY_MAX_TREND;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CUSTOM_LOGO_PATH;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.util.Optional.ofNullable;
+import static org.apache.commons.lang3.math.NumberUtils.toInt;
 
 public final class AllureBuildConfig implements Serializable {
     private final boolean onlyForFailed;
@@ -36,6 +40,9 @@ public final class AllureBuildConfig implements Serializable {
     private final boolean enabled;
     private final String artifactName;
     private final String logoUrl;
+    private final int historyMaxItems;
+    private final int historyMaxAge;
+    private final int historyMaxTrend;
     private static final String DEFAULT_ARTIFACT_NAME = "allure-results";
     public static final String DEFAULT_CUSTOM_LOGO_URL = "https://qameta.io/allure-report/img/reportlogo.svg";
 
@@ -43,12 +50,18 @@ public final class AllureBuildConfig implements Serializable {
                               final String enabled,
                               final String onlyForFailed,
                               final String artifactName,
-                              final String logoUrl) {
+                              final String logoUrl,
+                              final String historyMaxItems,
+                              final String historyMaxAge,
+                              final String historyMaxTrend) {
         this.onlyForFailed = StringUtils.isEmpty(onlyForFailed) ? TRUE : Boolean.parseBoolean(onlyForFailed);
         this.enabled = StringUtils.isEmpty(enabled) ? FALSE : Boolean.parseBoolean(enabled);
         this.executable = executable;
         this.artifactName = artifactName;
         this.logoUrl = !logoUrl.isEmpty() ? logoUrl : AllureBuildConfig.DEFAULT_CUSTOM_LOGO_URL;
+        this.historyMaxItems = Math.max(0, toInt(historyMaxItems));
+        this.historyMaxAge = Math.max(0, toInt(historyMaxAge));
+        this.historyMaxTrend = Math.max(0, toInt(historyMaxTrend));
     }
 
     static AllureBuildConfig fromContext(final Map<String, String> context) {
@@ -57,7 +70,10 @@ public final class AllureBuildConfig implements Serializable {
                 getSingleValue(context, ALLURE_CONFIG_ENABLED, FALSE.toString()),
                 getSingleValue(context, ALLURE_CONFIG_FAILED_ONLY, FALSE.toString()),
                 getSingleValue(context, ALLURE_CONFIG_ARTIFACT_NAME, AllureBuildConfig.DEFAULT_ARTIFACT_NAME),
-                getSingleValue(context, ALLURE_CUSTOM_LOGO_PATH, AllureBuildConfig.DEFAULT_CUSTOM_LOGO_URL));
+                getSingleValue(context, ALLURE_CUSTOM_LOGO_PATH, AllureBuildConfig.DEFAULT_CUSTOM_LOGO_URL),
+                getSingleValue(context, ALLURE_CONFIG_HISTORY_MAX_ITEMS, null),
+                getSingleValue(context, ALLURE_CONFIG_HISTORY_MAX_AGE, null),
+                getSingleValue(context, ALLURE_CONFIG_HISTORY_MAX_TREND, null));
     }
 
     @Nullable
@@ -93,4 +109,20 @@ public final class AllureBuildConfig implements Serializable {
         return this.logoUrl;
     }
 
+    boolean isHistoryCompactionEnabled() {
+        return historyMaxItems > 0 || historyMaxAge > 0 || historyMaxTrend > 0;
+    }
+
+    int getHistoryMaxItems() {
+        return historyMaxItems;
+    }
+
+    int getHistoryMaxAge() {
+        return historyMaxAge;
+    }
+
+    int getHistoryMaxTrend() {
+        return historyMaxTrend;
+    }
+
 }
@@ -20,14 +20,17 @@ import java.util.Map;
 
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_BUILD_REPORT_ARTIFACT_HANDLER;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_BUILD_REPORT_FAILURE_DETAILS;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_BUILD_REPORT_PUBLISHED_AT;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_BUILD_REPORT_SUCCESS;
 import static java.lang.Boolean.parseBoolean;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.lang3.math.NumberUtils.toLong;
 
 class AllureBuildResult implements Serializable {
     private final boolean success;
     private String artifactHandlerClass;
     private String failureDetails;
+    private long publishedAt;
 
     AllureBuildResult(final boolean success) {
         this.success = success;
@@ -48,6 +51,7 @@ class AllureBuildResult implements Serializable {
         final AllureBuildResult result = new AllureBuildResult(parseBoolean(data.get(ALLURE_BUILD_REPORT_SUCCESS)));
         result.setArtifactHandlerClass(data.get(ALLURE_BUILD_REPORT_ARTIFACT_HANDLER));
         result.setFailureDetails(data.get(ALLURE_BUILD_REPORT_FAILURE_DETAILS));
+        result.setPublishedAt(toLong(data.get(ALLURE_BUILD_REPORT_PUBLISHED_AT)));
         return result;
     }
 
@@ -55,6 +59,7 @@ class AllureBuildResult implements Serializable {
         data.put(ALLURE_BUILD_REPORT_ARTIFACT_HANDLER, artifactHandlerClass);
         data.put(ALLURE_BUILD_REPORT_SUCCESS, String.valueOf(success));
         data.put(ALLURE_BUILD_REPORT_FAILURE_DETAILS, failureDetails);
+        data.put(ALLURE_BUILD_REPORT_PUBLISHED_AT, publishedAt > 0 ? String.valueOf(publishedAt) : null);
     }
 
     AllureBuildResult withHandlerClass(final String artifactHandlerClass) {
@@ -62,6 +67,11 @@ class AllureBuildResult implements Serializable {
         return this;
     }
 
+    AllureBuildResult withPublishedAt(final long publishedAt) {
+        setPublishedAt(publishedAt);
+        return this;
+    }
+
     String getArtifactHandlerClass() {
         return artifactHandlerClass;
     }
@@ -82,6 +92,17 @@ class AllureBuildResult implements Serializable {
         this.failureDetails = failureDetails;
     }
 
+    /**
+     * Returns the time the report was published at, zero for the reports published by older versions.
+     */
+    long getPublishedAt() {
+        return publishedAt;
+    }
+
+    void setPublishedAt(final long publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
     boolean hasInfo() {
         return !isEmpty(this.failureDetails) || !isEmpty(artifactHandlerClass);
     }
@@ -0,0 +1,135 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import io.qameta.allure.bamboo.info.allurewidgets.summary.Statistic;
+import io.qameta.allure.bamboo.info.allurewidgets.summary.Summary;
+import io.qameta.allure.bamboo.info.allurewidgets.summary.Time;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_BUILD_REPORT_STATISTICS_PREFIX;
+import static org.apache.commons.lang3.math.NumberUtils.toInt;
+import static org.apache.commons.lang3.math.NumberUtils.toLong;
+
+/**
+ * Test statistics of the report, kept in the custom data of the build so they can be read
+ * without opening the report.
+ */
+class AllureBuildStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final String PASSED = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "passed";
+    private static final String FAILED = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "failed";
+    private static final String BROKEN = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "broken";
+    private static final String SKIPPED = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "skipped";
+    private static final String UNKNOWN = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "unknown";
+    private static final String TOTAL = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "total";
+    private static final String DURATION = ALLURE_BUILD_REPORT_STATISTICS_PREFIX + "duration";
+
+    private final int passed;
+    private final int failed;
+    private final int broken;
+    private final int skipped;
+    private final int unknown;
+    private final int total;
+    private final long duration;
+
+    AllureBuildStatistics(final int passed,
+                          final int failed,
+                          final int broken,
+                          final int skipped,
+                          final int unknown,
+                          final int total,
+                          final long duration) {
+        this.passed = passed;
+        this.failed = failed;
+        this.broken = broken;
+        this.skipped = skipped;
+        this.unknown = unknown;
+        this.total = total;
+        this.duration = duration;
+    }
+
+    static AllureBuildStatistics fromSummary(final Summary summary) {
+        final Statistic statistic = Optional.ofNullable(summary.getStatistic()).orElseGet(Statistic::new);
+        final Time time = Optional.ofNullable(summary.getTime()).orElseGet(Time::new);
+        return new AllureBuildStatistics(valueOf(statistic.getPassed()), valueOf(statistic.getFailed()),
+                valueOf(statistic.getBroken()), valueOf(statistic.getSkipped()), valueOf(statistic.getUnknown()),
+                valueOf(statistic.getTotal()), time.getDuration() == null ? 0 : time.getDuration());
+    }
+
+    /**
+     * Reads the statistics from the custom data of the build.
+     *
+     * @return empty for the builds published without statistics
+     */
+    static Optional<AllureBuildStatistics> fromCustomData(final Map<String, String> data) {
+        if (!data.containsKey(TOTAL)) {
+            return Optional.empty();
+        }
+        return Optional.of(new AllureBuildStatistics(toInt(data.get(PASSED)), toInt(data.get(FAILED)),
+                toInt(data.get(BROKEN)), toInt(data.get(SKIPPED)), toInt(data.get(UNKNOWN)), toInt(data.get(TOTAL)),
+                toLong(data.get(DURATION))));
+    }
+
+    void dumpToCustomData(final Map<String, String> data) {
+        data.put(PASSED, String.valueOf(passed));
+        data.put(FAILED, String.valueOf(failed));
+        data.put(BROKEN, String.valueOf(broken));
+        data.put(SKIPPED, String.valueOf(skipped));
+        data.put(UNKNOWN, String.valueOf(unknown));
+        data.put(TOTAL, String.valueOf(total));
+        data.put(DURATION, String.valueOf(duration));
+    }
+
+    private static int valueOf(final Integer count) {
+        return count == null ? 0 : count;
+    }
+
+    int getPassed() {
+        return passed;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+
+    int getBroken() {
+        return broken;
+    }
+
+    int getSkipped() {
+        return skipped;
+    }
+
+    int getUnknown() {
+        return unknown;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the duration of the tests in milliseconds.
+     */
+    long getDuration() {
+        return duration;
+    }
+}
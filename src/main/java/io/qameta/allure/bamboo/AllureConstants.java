@@ -44,6 +44,8 @@ final class AllureConstants {
     static final String ALLURE_BUILD_REPORT_SUCCESS = "custom.allure.build.report.success";
     static final String ALLURE_BUILD_REPORT_ARTIFACT_HANDLER = "custom.allure.build.report.artifact.handler";
     static final String ALLURE_BUILD_REPORT_FAILURE_DETAILS = "custom.allure.build.report.output";
+    static final String ALLURE_BUILD_REPORT_PUBLISHED_AT = "custom.allure.build.report.published.at";
+    static final String ALLURE_BUILD_REPORT_STATISTICS_PREFIX = "custom.allure.build.report.statistics.";
     static final String ALLURE_CONFIG_ENABLED = "custom.allure.config.enabled";
     static final String ALLURE_CONFIG_FAILED_ONLY = "custom.allure.config.failed.only";
     static final String ALLURE_CONFIG_ARTIFACT_NAME = "custom.allure.artifact.name";
@@ -53,6 +55,19 @@ final class AllureConstants {
     static final String ALLURE_CONFIG_DOWNLOAD_URL = "custom.allure.config.download.url";
     static final String ALLURE_CONFIG_DOWNLOAD_CLI_URL = "custom.allure.config.download.cli.url";
     static final String ALLURE_CONFIG_LOCAL_STORAGE = "custom.allure.config.local.storage";
+    static final String ALLURE_CONFIG_REDIRECT_ENABLED = "custom.allure.config.redirect.enabled";
+
+    // LOCAL STORAGE RETENTION
+    static final String ALLURE_CONFIG_RETENTION_MAX_SIZE = "custom.allure.config.retention.max.size";
+    static final String ALLURE_CONFIG_RETENTION_MAX_BUILDS = "custom.allure.config.retention.max.builds";
+    static final String ALLURE_CONFIG_RETENTION_MAX_AGE = "custom.allure.config.retention.max.age";
+    static final String ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL = "custom.allure.config.retention.keep.successful";
+    static final String ALLURE_CONFIG_STORAGE_PACK_AFTER = "custom.allure.config.storage.pack.after";
+
+    // HISTORY COMPACTION
+    static final String ALLURE_CONFIG_HISTORY_MAX_ITEMS = "custom.allure.config.history.max.items";
+    static final String ALLURE_CONFIG_HISTORY_MAX_AGE = "custom.allure.config.history.max.age";
+    static final String ALLURE_CONFIG_HISTORY_MAX_TREND = "custom.allure.config.history.max.trend";
 
     // ALLURE CUSTOM LOGO
     static final String ALLURE_CUSTOM_LOGO_ENABLED = "custom.allure.config.logo.enabled";
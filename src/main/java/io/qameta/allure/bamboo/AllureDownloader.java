@@ -15,7 +15,6 @@
  */
 package io.qameta.allure.bamboo;
 
-import io.qameta.allure.bamboo.util.Downloader;
 import io.qameta.allure.bamboo.util.ZipUtil;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.slf4j.Logger;
@@ -38,9 +37,12 @@ class AllureDownloader {
     private static final Logger LOGGER = LoggerFactory.getLogger(AllureDownloader.class);
 
     private final AllureSettingsManager settingsManager;
+    private final ArtifactHttpClient httpClient;
 
-    AllureDownloader(final AllureSettingsManager settingsManager) {
+    AllureDownloader(final AllureSettingsManager settingsManager,
+                     final ArtifactHttpClient httpClient) {
         this.settingsManager = settingsManager;
+        this.httpClient = httpClient;
     }
 
     Optional<Path> downloadAndExtractAllureTo(final String allureHomeDir,
@@ -76,7 +78,8 @@ class AllureDownloader {
                 try {
                     final Path downloadToFile = createTempFile("allure", ".zip");
                     LOGGER.info("Downloading allure.zip from {} to {}", url, downloadToFile);
-                    return Downloader.download(url, downloadToFile);
+                    httpClient.download(url, downloadToFile);
+                    return Optional.of(downloadToFile);
                 } catch (Exception e) {
                     LOGGER
                             .warn("Failed to download from {}. Root cause : {}.",
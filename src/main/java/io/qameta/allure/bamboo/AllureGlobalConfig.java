@@ -29,6 +29,7 @@ import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_DOWNLOAD_ENA
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_DOWNLOAD_URL;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_ENABLED_BY_DEFAULT;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_LOCAL_STORAGE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_REDIRECT_ENABLED;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CUSTOM_LOGO_ENABLED;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
@@ -47,11 +48,12 @@ class AllureGlobalConfig implements Serializable {
     private final String localStoragePath;
     private final String downloadBaseUrl;
     private final String downloadCliBaseUrl;
+    private final boolean redirectEnabled;
 
     AllureGlobalConfig() {
         this(TRUE.toString(), FALSE.toString(),
                 DEFAULT_DOWNLOAD_BASE_URL, DEFAULT_LOCAL_STORAGE_PATH,
-                DEFAULT_CLI_BASE_URL, TRUE.toString());
+                DEFAULT_CLI_BASE_URL, TRUE.toString(), FALSE.toString());
     }
 
     AllureGlobalConfig(final String downloadEnabled,
@@ -59,13 +61,15 @@ class AllureGlobalConfig implements Serializable {
                        final String downloadBaseUrl,
                        final String localStoragePath,
                        final String cmdLineUrl,
-                       final String customLogoEnable) {
+                       final String customLogoEnable,
+                       final String redirectEnabled) {
         this.downloadEnabled = StringUtils.isEmpty(downloadEnabled) ? TRUE : parseBoolean(downloadEnabled);
         this.enabledByDefault = StringUtils.isEmpty(enabledByDefault) ? FALSE : parseBoolean(enabledByDefault);
         this.downloadBaseUrl = StringUtils.isEmpty(downloadBaseUrl) ? DEFAULT_DOWNLOAD_BASE_URL : downloadBaseUrl;
         this.downloadCliBaseUrl = StringUtils.isEmpty(cmdLineUrl) ? DEFAULT_CLI_BASE_URL : cmdLineUrl;
         this.localStoragePath = StringUtils.isEmpty(localStoragePath) ? DEFAULT_LOCAL_STORAGE_PATH : localStoragePath;
         this.customLogoEnabled = StringUtils.isEmpty(customLogoEnable) ? TRUE : parseBoolean(customLogoEnable);
+        this.redirectEnabled = parseBoolean(redirectEnabled);
     }
 
 
@@ -77,7 +81,8 @@ class AllureGlobalConfig implements Serializable {
                 getSingleValue(context, ALLURE_CONFIG_DOWNLOAD_URL, DEFAULT_DOWNLOAD_BASE_URL),
                 getSingleValue(context, ALLURE_CONFIG_LOCAL_STORAGE, DEFAULT_LOCAL_STORAGE_PATH),
                 getSingleValue(context, ALLURE_CONFIG_DOWNLOAD_CLI_URL, DEFAULT_CLI_BASE_URL),
-                getSingleValue(context, ALLURE_CUSTOM_LOGO_ENABLED, FALSE.toString())
+                getSingleValue(context, ALLURE_CUSTOM_LOGO_ENABLED, FALSE.toString()),
+                getSingleValue(context, ALLURE_CONFIG_REDIRECT_ENABLED, FALSE.toString())
         );
     }
 
@@ -97,6 +102,7 @@ class AllureGlobalConfig implements Serializable {
         context.put(ALLURE_CONFIG_DOWNLOAD_CLI_URL, getDownloadCliBaseUrl());
         context.put(ALLURE_CONFIG_LOCAL_STORAGE, getLocalStoragePath());
         context.put(ALLURE_CUSTOM_LOGO_ENABLED, isCustomLogoEnabled());
+        context.put(ALLURE_CONFIG_REDIRECT_ENABLED, isRedirectEnabled());
     }
 
     boolean isDownloadEnabled() {
@@ -111,6 +117,13 @@ class AllureGlobalConfig implements Serializable {
         return customLogoEnabled;
     }
 
+    /**
+     * Whether browsers are redirected to the files of remote artifact storages instead of proxying them.
+     */
+    boolean isRedirectEnabled() {
+        return redirectEnabled;
+    }
+
     String getDownloadBaseUrl() {
         return downloadBaseUrl;
     }
@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.lang.Long.getLong;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Background job which periodically logs how the artifact storages and the cache of report files have been used.
+ */
+public class AllureMetricsReporter implements LifecycleAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllureMetricsReporter.class);
+    private static final long REPORT_INTERVAL_MIN = getLong("allure.metrics.log.interval.min", 60);
+
+    private final ArtifactHttpClient httpClient;
+    private final AllureArtifactsManager artifactsManager;
+    private ScheduledExecutorService executor;
+
+    public AllureMetricsReporter(final ArtifactHttpClient httpClient,
+                                 final AllureArtifactsManager artifactsManager) {
+        this.httpClient = httpClient;
+        this.artifactsManager = artifactsManager;
+    }
+
+    @Override
+    public void onStart() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "allure-metrics-reporter");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::report, REPORT_INTERVAL_MIN, REPORT_INTERVAL_MIN, MINUTES);
+    }
+
+    @Override
+    public void onStop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void report() {
+        LOGGER.info("Requests of Allure Report artifacts: {}", httpClient.getMetrics());
+        LOGGER.info("Cache of the most requested Allure Report files: {}", artifactsManager.getHotFileStats());
+    }
+}
@@ -15,33 +15,36 @@
  */
 package io.qameta.allure.bamboo;
 
-import com.atlassian.bamboo.plan.PlanResultKey;
-import com.atlassian.bamboo.resultsummary.ResultsSummary;
-import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
-import org.apache.commons.io.IOUtils;
+import io.qameta.allure.bamboo.util.ReportManifest;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import static com.atlassian.bamboo.plan.PlanKeys.getPlanResultKey;
-import static io.qameta.allure.bamboo.AllureBuildResult.fromCustomData;
-import static java.lang.Integer.parseInt;
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class AllureReportServlet extends HttpServlet {
 
@@ -50,16 +53,54 @@ public class AllureReportServlet extends HttpServlet {
     private static final Logger LOGGER = LoggerFactory.getLogger(AllureReportServlet.class);
     private static final String CONTENT_DISPOSITION = "Content-Disposition";
     private static final String CONTENT_TYPE = "Content-Type";
+    private static final String INDEX_HTML = "index.html";
+    private static final String ATTACHMENTS_DIR = "data/attachments/";
+    private static final String[] XHR_DIRS = {"data/", "widgets/", "history/", "export/"};
     private static final String FAILED_TO_SEND_FILE_OF_ALLURE_REPORT = "Failed to send file {} of Allure Report ";
+    private static final int ETAG_HASH_LENGTH = 32;
+    private static final int THREADS = getInteger("allure.report.threads", 16);
+    private static final int QUEUE_SIZE = getInteger("allure.report.queue.size", 256);
+    private static final int WRITE_QUEUE_SIZE = getInteger("allure.report.write.queue.size", 1024);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final long ASYNC_TIMEOUT_MS = SECONDS.toMillis(getInteger("allure.report.timeout.sec", 600));
 
     private final transient AllureArtifactsManager artifactsManager;
-    private final ResultsSummaryManager resultsSummaryManager;
+    private final transient ThreadPoolExecutor executor;
+    private final transient ThreadPoolExecutor writeExecutor;
+    private final transient ReportFileSender fileSender;
 
     @Inject
     public AllureReportServlet(final AllureArtifactsManager artifactsManager,
-                               final ResultsSummaryManager resultsSummaryManager) {
+                               final ArtifactHttpClient httpClient) {
+        this(artifactsManager, httpClient,
+                newExecutor("allure-report-", new ArrayBlockingQueue<>(QUEUE_SIZE)),
+                newExecutor("allure-report-writer-", new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE)));
+    }
+
+    AllureReportServlet(final AllureArtifactsManager artifactsManager,
+                        final ArtifactHttpClient httpClient,
+                        final ThreadPoolExecutor executor,
+                        final ThreadPoolExecutor writeExecutor) {
         this.artifactsManager = artifactsManager;
-        this.resultsSummaryManager = resultsSummaryManager;
+        this.executor = executor;
+        this.writeExecutor = writeExecutor;
+        this.fileSender = new ReportFileSender(artifactsManager, httpClient, writeExecutor);
+    }
+
+    /**
+     * Creates an executor of daemon threads, which rejects tasks once its bounded queue is full.
+     * Responses being written have a queue of their own, so a started response is not waiting behind new requests,
+     * and a response which cannot be continued is aborted rather than queued without a limit.
+     */
+    private static ThreadPoolExecutor newExecutor(final String threadPrefix,
+                                                  final BlockingQueue<Runnable> queue) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 1, MINUTES, queue, runnable -> {
+            final Thread thread = new Thread(runnable, threadPrefix + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public static Pattern getUrlPattern() {
@@ -69,60 +110,170 @@ public class AllureReportServlet extends HttpServlet {
     @Override
     protected void doGet(final HttpServletRequest request,
                          final HttpServletResponse response) {
-        getArtifactUrl(request, response).ifPresent(file -> {
-            try (InputStream inputStream = new URL(file).openStream()) {
-                setResponseHeaders(response, file);
-                IOUtils.copy(inputStream, response.getOutputStream());
-            } catch (IOException e) {
-                LOGGER.error(FAILED_TO_SEND_FILE_OF_ALLURE_REPORT, file);
-            }
-        });
+        process(request, response, this::sendFile);
     }
 
     @Override
     protected void doHead(final HttpServletRequest request,
                           final HttpServletResponse response) {
-        getArtifactUrl(request, response).ifPresent(file -> {
-            try (InputStream inputStream = new URL(file).openStream()) {
+        process(request, response, this::sendHead);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        writeExecutor.shutdownNow();
+        super.destroy();
+    }
+
+    /**
+     * Requests are processed asynchronously on the bounded report executor when the container allows that,
+     * so report traffic does not hold the threads Bamboo needs to serve its own pages.
+     */
+    private void process(final HttpServletRequest request,
+                         final HttpServletResponse response,
+                         final BiPredicate<HttpServletRequest, HttpServletResponse> handler) {
+        if (!request.isAsyncSupported()) {
+            handler.test(request, response);
+            return;
+        }
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ASYNC_TIMEOUT_MS);
+        try {
+            executor.execute(() -> {
+                boolean pending = false;
+                try {
+                    pending = handler.test(request, response);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to process request {} of Allure Report", request.getRequestURI(), e);
+                    sendInternalError(response);
+                } finally {
+                    if (!pending) {
+                        asyncContext.complete();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Too many requests of Allure Reports, {} are in the queue already", QUEUE_SIZE);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            asyncContext.complete();
+        }
+    }
+
+    private static void sendInternalError(final HttpServletResponse response) {
+        if (response.isCommitted()) {
+            return;
+        }
+        try {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.debug("Failed to send error of Allure Report", e);
+        }
+    }
+
+    private boolean sendFile(final HttpServletRequest request,
+                             final HttpServletResponse response) {
+        return getReportFile(request, response).map(file -> {
+            try {
                 setResponseHeaders(response, file);
+                return fileSender.send(request, response, file);
             } catch (IOException e) {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                LOGGER.error(FAILED_TO_SEND_FILE_OF_ALLURE_REPORT, file);
+                LOGGER.error(FAILED_TO_SEND_FILE_OF_ALLURE_REPORT, file.getUrl(), e);
+                sendFailure(response, e);
+                return false;
             }
-        });
+        }).orElse(false);
     }
 
-    private void setResponseHeaders(final HttpServletResponse response,
-                                    final String fileUrl) throws IOException {
+    private boolean sendHead(final HttpServletRequest request,
+                             final HttpServletResponse response) {
+        getReportFile(request, response).ifPresent(file -> {
+            try {
+                setResponseHeaders(response, file);
+                fileSender.head(response, file);
+            } catch (IOException e) {
+                LOGGER.error(FAILED_TO_SEND_FILE_OF_ALLURE_REPORT, file.getUrl(), e);
+                sendFailure(response, e);
+            }
+        });
+        return false;
+    }
 
+    /**
+     * The validators of the file are set before its content is opened. They are dropped together with the rest
+     * of the headers, so that browsers do not keep an empty file and revalidate it for as long as the report lives.
+     * Once the response is committed, its content is cut short, which browsers do not cache.
+     */
+    private static void sendFailure(final HttpServletResponse response,
+                                    final IOException failure) {
+        if (response.isCommitted()) {
+            return;
+        }
+        response.reset();
         try {
-            response.setStatus(HttpServletResponse.SC_OK);
-            final URI file = new URL(fileUrl).toURI();
-            final String mimeType = Optional.ofNullable(getServletContext().getMimeType(fileUrl))
-                    .orElse(Files.probeContentType(Paths.get(file.getPath()))
-                    );
-            final String charsetPostfix = Stream.of("application", "text")
-                    .anyMatch(mimeType::contains) ? ";charset=utf-8" : "";
-            response.setHeader(CONTENT_TYPE, mimeType + charsetPostfix);
-            response.setHeader(CONTENT_DISPOSITION,
-                    "inline; filename=\"" + Paths.get(file.getPath()).getFileName().toString() + "\"");
-
-        } catch (URISyntaxException e) {
-            // should never happen
-            throw new AllurePluginException("Unexpected error", e);
+            response.sendError(failure instanceof FileNotFoundException || failure instanceof NoSuchFileException
+                    ? HttpServletResponse.SC_NOT_FOUND : HttpServletResponse.SC_BAD_GATEWAY);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to send error of Allure Report", e);
         }
     }
 
-    private Optional<String> getArtifactUrl(final HttpServletRequest request,
-                                            final HttpServletResponse response) {
+    private void setResponseHeaders(final HttpServletResponse response,
+                                    final ReportFile file) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        final String fileName = getFileName(file.getUrl());
+        final String mimeType = Optional.ofNullable(getServletContext().getMimeType(fileName))
+                .orElse(file.getType() != null ? file.getType() : Files.probeContentType(Paths.get(fileName)));
+        final String charsetPostfix = Stream.of("application", "text")
+                .anyMatch(mimeType::contains) ? ";charset=utf-8" : "";
+        response.setHeader(CONTENT_TYPE, mimeType + charsetPostfix);
+        response.setHeader(CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"");
+    }
+
+    /**
+     * Returns the name of the file from its URL, which can be a file, a report pack entry or a remote URL.
+     */
+    private static String getFileName(final String fileUrl) {
+        final String path = StringUtils.substringBefore(StringUtils.substringBefore(fileUrl, "?"), "#");
+        return StringUtils.substringAfterLast(path, "/");
+    }
+
+    private Optional<ReportFile> getReportFile(final HttpServletRequest request,
+                                               final HttpServletResponse response) {
         final Matcher matcher = URL_PATTERN.matcher(request.getRequestURI());
         if (matcher.matches()) {
             response.setHeader("X-Frame-Options", "ALLOWALL");
             final String planKey = matcher.group(1);
             final String buildNumber = matcher.group(2);
             final String filePath = matcher.group(3);
-            if (wasUploadSuccess(response, planKey, parseInt(buildNumber))) {
-                return artifactsManager.getArtifactUrl(planKey, buildNumber, filePath);
+            final Optional<ReportResolution> resolution = artifactsManager.resolveReport(planKey, buildNumber);
+            if (resolution.isPresent() && wasUploadSuccess(response, resolution.get().getBuildResult())) {
+                if (resolution.get().isEvicted()) {
+                    response.setStatus(HttpServletResponse.SC_GONE);
+                    renderMessage(response, "Allure Report of this build has been removed from the storage "
+                            + "according to the retention policy.");
+                    return Optional.empty();
+                }
+                final ReportManifest.Entry entry = artifactsManager.getManifestEntry(planKey, buildNumber, filePath)
+                        .orElse(null);
+                final String eTag = getETag(resolution.get(), entry);
+                if (isNotModified(request, resolution.get(), eTag)) {
+                    setCacheHeaders(response, resolution.get(), eTag);
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return Optional.empty();
+                }
+                final Optional<String> artifactUrl = artifactsManager.getArtifactUrl(planKey, buildNumber, filePath);
+                if (artifactUrl.isPresent() && isRedirectable(resolution.get(), filePath, artifactUrl.get())) {
+                    response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+                    response.setHeader("Location", artifactUrl.get());
+                    return Optional.empty();
+                }
+                artifactUrl.ifPresent(url -> setCacheHeaders(response, resolution.get(), eTag));
+                final String key = planKey + "/" + buildNumber + "/"
+                        + Long.toHexString(resolution.get().getLastModified()) + "/" + filePath;
+                return artifactUrl.map(url -> new ReportFile(url, key, entry));
             }
         } else {
             LOGGER.info("Path {} does not match pattern", request.getRequestURI());
@@ -130,22 +281,93 @@ public class AllureReportServlet extends HttpServlet {
         return Optional.empty();
     }
 
-    private boolean wasUploadSuccess(final HttpServletResponse response,
-                                     final String planKey,
-                                     final int buildNumber) {
-        final PlanResultKey planResultKey = getPlanResultKey(planKey, buildNumber);
-        final ResultsSummary results = resultsSummaryManager.getResultsSummary(planResultKey);
-        if (results != null) {
-            final AllureBuildResult uploadResult = fromCustomData(results.getCustomBuildData());
-            if (!uploadResult.isSuccess()) {
-                uploadResultWasNotSuccess(response, uploadResult);
-                return false;
-            }
-            return true;
+    /**
+     * Files of remote storages can be downloaded by browsers directly. The index page is always served here,
+     * so that the rest of the report is requested relative to this servlet.
+     */
+    private boolean isRedirectable(final ReportResolution resolution,
+                                   final String filePath,
+                                   final String artifactUrl) {
+        return !resolution.isLocal()
+                && (artifactUrl.startsWith("https://") || artifactUrl.startsWith("http://"))
+                && !INDEX_HTML.equals(getFileName(artifactUrl))
+                && isLoadedByElement(filePath)
+                && artifactsManager.isRedirectEnabled();
+    }
+
+    /**
+     * The report reads its data, widgets, history and text attachments by XHR, which a storage of another origin
+     * only answers if it allows that by CORS. So only scripts, styles and the images and videos of attachments,
+     * which are loaded by elements of the page, are redirected.
+     */
+    private boolean isLoadedByElement(final String filePath) {
+        if (filePath.startsWith(ATTACHMENTS_DIR)) {
+            final String mimeType = getServletContext().getMimeType(getFileName("/" + filePath));
+            return mimeType != null && (mimeType.startsWith("image/") || mimeType.startsWith("video/"));
         }
-        return false;
+        return !filePath.isEmpty() && !StringUtils.startsWithAny(filePath, XHR_DIRS);
     }
 
+    /**
+     * Files listed in the manifest are tagged by the SHA-256 of their content, truncated to 128 bits, so a file
+     * that is the same in the rerun of a build is still valid in the cache of the browser.
+     * Other files are tagged by the publish time of the report.
+     */
+    private static String getETag(final ReportResolution resolution,
+                                  final @Nullable ReportManifest.Entry entry) {
+        if (entry == null || entry.getHash() == null) {
+            return resolution.getETag();
+        }
+        return "\"" + entry.getHash().substring(0, ETAG_HASH_LENGTH) + "\"";
+    }
+
+    /**
+     * Checks the validators of the request against the entity tag of the file or the publish time of the report
+     * without touching the storage.
+     */
+    private boolean isNotModified(final HttpServletRequest request,
+                                  final ReportResolution resolution,
+                                  final String eTag) {
+        if (resolution.getLastModified() <= 0) {
+            return false;
+        }
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return Stream.of(ifNoneMatch.split(","))
+                    .map(tag -> StringUtils.removeStart(tag.trim(), "W/"))
+                    .anyMatch(tag -> "*".equals(tag) || eTag.equals(tag));
+        }
+        try {
+            final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && resolution.getLastModified() / 1000 * 1000 <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Every file of a report, scripts included, changes when the build is rerun under the same URL,
+     * so browsers revalidate it on every view. Revalidation is answered from the validators alone.
+     */
+    private void setCacheHeaders(final HttpServletResponse response,
+                                 final ReportResolution resolution,
+                                 final String eTag) {
+        if (resolution.getLastModified() <= 0) {
+            return;
+        }
+        response.setHeader("ETag", eTag);
+        response.setDateHeader("Last-Modified", resolution.getLastModified());
+        response.setHeader("Cache-Control", "private, no-cache");
+    }
+
+    private boolean wasUploadSuccess(final HttpServletResponse response,
+                                     final AllureBuildResult uploadResult) {
+        if (!uploadResult.isSuccess()) {
+            uploadResultWasNotSuccess(response, uploadResult);
+            return false;
+        }
+        return true;
+    }
 
     private void uploadResultWasNotSuccess(final HttpServletResponse response,
                                            final AllureBuildResult uploadResult) {
@@ -153,11 +375,16 @@ public class AllureReportServlet extends HttpServlet {
                 ? "Unknown error has occurred during Allure Build. Please refer the server logs for details."
                 : "Something went wrong with Allure Report generation. Here are some details: \n"
                 + uploadResult.getFailureDetails();
+        renderMessage(response, errorMessage);
+    }
+
+    private void renderMessage(final HttpServletResponse response,
+                               final String message) {
         try {
             response.setHeader(CONTENT_TYPE, "text/plain");
-            response.setHeader("Content-Length", String.valueOf(errorMessage.length()));
+            response.setHeader("Content-Length", String.valueOf(message.length()));
             response.setHeader(CONTENT_DISPOSITION, "inline");
-            response.getWriter().write(errorMessage);
+            response.getWriter().write(message);
         } catch (IOException e) {
             LOGGER.error("Failed to render error of Allure Report build ", e);
         }
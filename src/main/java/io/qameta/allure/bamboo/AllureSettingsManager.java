@@ -23,6 +23,12 @@ import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_DOWNLOAD_ENA
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_DOWNLOAD_URL;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_ENABLED_BY_DEFAULT;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_LOCAL_STORAGE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_REDIRECT_ENABLED;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_MAX_AGE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_MAX_BUILDS;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_MAX_SIZE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_STORAGE_PACK_AFTER;
 import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CUSTOM_LOGO_ENABLED;
 
 public class AllureSettingsManager {
@@ -40,8 +46,9 @@ public class AllureSettingsManager {
         final String downloadBaseUrl = (String) settings.get(ALLURE_CONFIG_DOWNLOAD_URL);
         final String downloadCliBaseUrl = (String) settings.get(ALLURE_CONFIG_DOWNLOAD_CLI_URL);
         final String localStorage = (String) settings.get(ALLURE_CONFIG_LOCAL_STORAGE);
+        final String redirectEnabled = (String) settings.get(ALLURE_CONFIG_REDIRECT_ENABLED);
         return new AllureGlobalConfig(downloadEnabled, enableByDefault,
-                downloadBaseUrl, localStorage, downloadCliBaseUrl, customLogoEnabled);
+                downloadBaseUrl, localStorage, downloadCliBaseUrl, customLogoEnabled, redirectEnabled);
     }
 
     void saveSettings(final AllureGlobalConfig config) {
@@ -50,5 +57,23 @@ public class AllureSettingsManager {
         settings.put(ALLURE_CONFIG_DOWNLOAD_URL, String.valueOf(config.getDownloadBaseUrl()));
         settings.put(ALLURE_CONFIG_LOCAL_STORAGE, String.valueOf(config.getLocalStoragePath()));
         settings.put(ALLURE_CONFIG_ENABLED_BY_DEFAULT, String.valueOf(config.isEnabledByDefault()));
+        settings.put(ALLURE_CONFIG_REDIRECT_ENABLED, String.valueOf(config.isRedirectEnabled()));
+    }
+
+    AllureStorageConfig getStorageSettings() {
+        return new AllureStorageConfig(
+                (String) settings.get(ALLURE_CONFIG_RETENTION_MAX_SIZE),
+                (String) settings.get(ALLURE_CONFIG_RETENTION_MAX_BUILDS),
+                (String) settings.get(ALLURE_CONFIG_RETENTION_MAX_AGE),
+                (String) settings.get(ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL),
+                (String) settings.get(ALLURE_CONFIG_STORAGE_PACK_AFTER));
+    }
+
+    void saveStorageSettings(final AllureStorageConfig config) {
+        settings.put(ALLURE_CONFIG_RETENTION_MAX_SIZE, String.valueOf(config.getMaxSizeMb()));
+        settings.put(ALLURE_CONFIG_RETENTION_MAX_BUILDS, String.valueOf(config.getMaxBuilds()));
+        settings.put(ALLURE_CONFIG_RETENTION_MAX_AGE, String.valueOf(config.getMaxAgeDays()));
+        settings.put(ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL, String.valueOf(config.getKeepSuccessful()));
+        settings.put(ALLURE_CONFIG_STORAGE_PACK_AFTER, String.valueOf(config.getPackAfterDays()));
     }
 }
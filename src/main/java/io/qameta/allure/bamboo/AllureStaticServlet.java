@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the UI assets shared by the reports. The URL of an asset contains the hash of its content,
+ * so the asset never changes and is cached by browsers for good.
+ */
+public class AllureStaticServlet extends HttpServlet {
+
+    static final String URL_PATH = "/plugins/servlet/allure/static";
+
+    private static final Pattern URL_PATTERN = Pattern.compile(".*" + URL_PATH + "/([^/]+)/([^/]+)/([^/]+)");
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllureStaticServlet.class);
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private final transient AllureArtifactsManager artifactsManager;
+
+    @Inject
+    public AllureStaticServlet(final AllureArtifactsManager artifactsManager) {
+        this.artifactsManager = artifactsManager;
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request,
+                         final HttpServletResponse response) throws IOException {
+        final Optional<Path> asset = getAsset(request, response);
+        if (asset.isPresent()) {
+            try {
+                Files.copy(asset.get(), response.getOutputStream());
+            } catch (IOException e) {
+                LOGGER.debug("Failed to send static asset {} of Allure Report", asset.get(), e);
+            }
+        }
+    }
+
+    @Override
+    protected void doHead(final HttpServletRequest request,
+                          final HttpServletResponse response) throws IOException {
+        getAsset(request, response);
+    }
+
+    /**
+     * Finds the requested asset and sets the headers of the response.
+     *
+     * @return the file of the asset if its content has to be sent
+     */
+    private Optional<Path> getAsset(final HttpServletRequest request,
+                                    final HttpServletResponse response) throws IOException {
+        final Matcher matcher = URL_PATTERN.matcher(request.getRequestURI());
+        final Optional<Path> asset = matcher.matches()
+                ? artifactsManager.getStaticAssetStore().getAsset(matcher.group(1), matcher.group(2), matcher.group(3))
+                : Optional.empty();
+        if (!asset.isPresent()) {
+            final Optional<String> reportCopy = matcher.matches()
+                    ? getReportCopy(request, matcher.group(3)) : Optional.empty();
+            if (reportCopy.isPresent()) {
+                response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+                response.setHeader("Location", reportCopy.get());
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+            return Optional.empty();
+        }
+        final String etag = "\"" + matcher.group(2) + "\"";
+        response.setHeader("Cache-Control", IMMUTABLE);
+        response.setHeader("ETag", etag);
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return Optional.empty();
+        }
+        final String type = getServletContext().getMimeType(matcher.group(3));
+        if (type != null) {
+            response.setContentType(type);
+        }
+        response.setContentLengthLong(Files.size(asset.get()));
+        return asset;
+    }
+
+    /**
+     * Assets which have been cleaned up are still kept by every report. The report is known from the page
+     * requesting the asset, so the browser is sent to the copy of the report. Only the plan, the build and the path
+     * of the page are taken from the referer, the location always points to the report servlet of this server.
+     */
+    private static Optional<String> getReportCopy(final HttpServletRequest request,
+                                                  final String name) {
+        final String referer = request.getHeader("Referer");
+        if (referer == null) {
+            return Optional.empty();
+        }
+        final String page = StringUtils.substringBefore(StringUtils.substringBefore(referer, "?"), "#");
+        final Matcher matcher = AllureReportServlet.getUrlPattern().matcher(page);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        final String path = matcher.group(3);
+        final String dir = path.contains("/") ? StringUtils.substringBeforeLast(path, "/") + "/" : "";
+        return Optional.of(request.getContextPath() + "/plugins/servlet/allure/report/"
+                + matcher.group(1) + "/" + matcher.group(2) + "/" + dir + name);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
+import com.atlassian.bamboo.security.BambooPermissionManager;
+import com.atlassian.bamboo.security.acegi.acls.BambooPermission;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static com.atlassian.bamboo.plan.PlanKeys.getPlanKey;
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.joining;
+import static org.apache.commons.lang3.math.NumberUtils.toInt;
+
+/**
+ * Returns the stored test statistics of many builds in one response, so dashboards do not have to fetch
+ * the summary of every report. The builds are requested as plan parameters: {@code PROJ-PLAN} for the last
+ * builds of the plan, {@code PROJ-PLAN:42} for one build and {@code PROJ-PLAN:10-42} for a range of builds.
+ * The requested builds are paged with the offset and limit parameters, the builds without statistics are
+ * left out of the page. Only the plans the user is allowed to view can be requested. Dashboards poll
+ * the same pages over and over, so the last builds of the plans and the pages are cached for a short time.
+ */
+public class AllureStatisticsServlet extends HttpServlet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllureStatisticsServlet.class);
+    private static final Pattern PLAN_PATTERN = Pattern.compile("([\\w-]+)(?::(\\d+)(?:-(\\d+))?)?");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int DEFAULT_LAST = 50;
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_LIMIT = getInteger("allure.statistics.max.limit", 2000);
+    private static final int MAX_BUILDS = getInteger("allure.statistics.max.builds", 100_000);
+    private static final int PAGE_CACHE_TTL_SEC = getInteger("allure.statistics.page.cache.ttl.sec", 30);
+
+    private final transient AllureArtifactsManager artifactsManager;
+    private final transient ResultsSummaryManager resultsSummaryManager;
+    private final transient BambooPermissionManager permissionManager;
+    private final transient Cache<String, Integer> latestBuilds = CacheBuilder.newBuilder()
+            .maximumSize(getInteger("allure.statistics.latest.cache.size", 1000))
+            .expireAfterWrite(PAGE_CACHE_TTL_SEC, SECONDS)
+            .build();
+    private final transient Cache<String, Page> pages = CacheBuilder.newBuilder()
+            .maximumWeight(getInteger("allure.statistics.page.cache.bytes", 8 * 1024 * 1024))
+            .weigher((String key, Page page) -> page.body.length)
+            .expireAfterWrite(PAGE_CACHE_TTL_SEC, SECONDS)
+            .build();
+
+    @Inject
+    public AllureStatisticsServlet(final AllureArtifactsManager artifactsManager,
+                                   final ResultsSummaryManager resultsSummaryManager,
+                                   final BambooPermissionManager permissionManager) {
+        this.artifactsManager = artifactsManager;
+        this.resultsSummaryManager = resultsSummaryManager;
+        this.permissionManager = permissionManager;
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request,
+                         final HttpServletResponse response) throws IOException {
+        final List<BuildRange> ranges = new ArrayList<>();
+        try {
+            final int last = Math.max(1, toInt(request.getParameter("last"), DEFAULT_LAST));
+            for (String plan : Optional.ofNullable(request.getParameterValues("plan")).orElse(new String[0])) {
+                final BuildRange range = BuildRange.parse(plan);
+                if (!permissionManager.hasPlanPermission(BambooPermission.READ, getPlanKey(range.planKey))) {
+                    response.sendError(HttpServletResponse.SC_FORBIDDEN, "Not allowed to view " + range.planKey);
+                    return;
+                }
+                ranges.add(resolveLatest(range, last));
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        final long requested = ranges.stream().mapToLong(BuildRange::size).sum();
+        if (requested > MAX_BUILDS) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Too many builds requested: " + requested);
+            return;
+        }
+        final int offset = Math.max(0, toInt(request.getParameter("offset"), 0));
+        final int limit = Math.min(MAX_LIMIT, Math.max(1, toInt(request.getParameter("limit"), DEFAULT_LIMIT)));
+
+        final String signature = ranges.stream().map(BuildRange::toString).collect(joining(","))
+                + "?" + offset + "+" + limit;
+        final Page page;
+        try {
+            page = pages.get(signature, () -> new Page(writePage(ranges, requested, offset, limit,
+                    artifactsManager::getBuildStatistics)));
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write Allure statistics", e.getCause());
+        }
+        response.setHeader("ETag", page.etag);
+        response.setHeader("Cache-Control", "no-cache");
+        if (page.etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        response.setContentLength(page.body.length);
+        try {
+            response.getOutputStream().write(page.body);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to send Allure statistics", e);
+        }
+    }
+
+    private BuildRange resolveLatest(final BuildRange range,
+                                     final int last) {
+        if (range.from > 0) {
+            return range;
+        }
+        Integer to = latestBuilds.getIfPresent(range.planKey);
+        if (to == null) {
+            final ResultsSummary latest = resultsSummaryManager.findLastBuildResultBefore(range.planKey,
+                    Integer.MAX_VALUE);
+            to = latest == null ? 0 : latest.getBuildNumber();
+            latestBuilds.put(range.planKey, to);
+        }
+        return new BuildRange(range.planKey, Math.max(1, to - last + 1), to);
+    }
+
+    /**
+     * Writes the page of the requested builds, the newest builds of every range go first.
+     */
+    static byte[] writePage(final List<BuildRange> ranges,
+                            final long requested,
+                            final int offset,
+                            final int limit,
+                            final BuildStatisticsSource statistics) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeNumberField("offset", offset);
+            generator.writeNumberField("limit", limit);
+            generator.writeNumberField("total", requested);
+            generator.writeArrayFieldStart("builds");
+            long index = 0;
+            for (BuildRange range : ranges) {
+                if (index + range.size() <= offset) {
+                    index += range.size();
+                    continue;
+                }
+                for (int build = range.to; build >= range.from && index < (long) offset + limit; build--, index++) {
+                    if (index >= offset) {
+                        writeBuild(generator, range.planKey, build, statistics.get(range.planKey, build));
+                    }
+                }
+            }
+            generator.writeEndArray();
+            if ((long) offset + limit < requested) {
+                generator.writeNumberField("nextOffset", offset + limit);
+            }
+            generator.writeEndObject();
+        }
+        return output.toByteArray();
+    }
+
+    private static void writeBuild(final JsonGenerator generator,
+                                   final String planKey,
+                                   final int buildNumber,
+                                   final Optional<AllureBuildStatistics> statistics) throws IOException {
+        if (!statistics.isPresent()) {
+            return;
+        }
+        final AllureBuildStatistics stats = statistics.get();
+        generator.writeStartObject();
+        generator.writeStringField("planKey", planKey);
+        generator.writeNumberField("buildNumber", buildNumber);
+        generator.writeObjectFieldStart("statistic");
+        generator.writeNumberField("passed", stats.getPassed());
+        generator.writeNumberField("failed", stats.getFailed());
+        generator.writeNumberField("broken", stats.getBroken());
+        generator.writeNumberField("skipped", stats.getSkipped());
+        generator.writeNumberField("unknown", stats.getUnknown());
+        generator.writeNumberField("total", stats.getTotal());
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("time");
+        generator.writeNumberField("duration", stats.getDuration());
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Builds of a plan from one number to another, both inclusive. A range without numbers stands
+     * for the last builds of the plan.
+     */
+    static final class BuildRange {
+
+        private final String planKey;
+        private final int from;
+        private final int to;
+
+        BuildRange(final String planKey,
+                   final int from,
+                   final int to) {
+            this.planKey = planKey;
+            this.from = from;
+            this.to = to;
+        }
+
+        static BuildRange parse(final String value) {
+            final Matcher matcher = PLAN_PATTERN.matcher(StringUtils.trimToEmpty(value));
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Malformed plan parameter: " + value);
+            }
+            final int from = toInt(matcher.group(2), 0);
+            final int to = matcher.group(3) == null ? from : toInt(matcher.group(3), 0);
+            if (matcher.group(2) != null && (from < 1 || to < from)) {
+                throw new IllegalArgumentException("Malformed build range: " + value);
+            }
+            return new BuildRange(matcher.group(1), from, to);
+        }
+
+        String getPlanKey() {
+            return planKey;
+        }
+
+        int getFrom() {
+            return from;
+        }
+
+        int getTo() {
+            return to;
+        }
+
+        long size() {
+            return Math.max(0, (long) to - from + 1);
+        }
+
+        @Override
+        public String toString() {
+            return planKey + ":" + from + "-" + to;
+        }
+    }
+
+    /**
+     * Source of the statistics of the builds.
+     */
+    @FunctionalInterface
+    interface BuildStatisticsSource {
+
+        Optional<AllureBuildStatistics> get(String planKey, int buildNumber);
+    }
+
+    /**
+     * Rendered page with the entity tag of its content.
+     */
+    private static final class Page {
+
+        private final byte[] body;
+        private final String etag;
+
+        private Page(final byte[] body) {
+            final CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            this.body = body;
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "\"";
+        }
+    }
+}
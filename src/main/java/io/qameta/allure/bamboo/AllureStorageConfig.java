@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_MAX_AGE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_MAX_BUILDS;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_RETENTION_MAX_SIZE;
+import static io.qameta.allure.bamboo.AllureConstants.ALLURE_CONFIG_STORAGE_PACK_AFTER;
+import static org.apache.commons.lang3.math.NumberUtils.toInt;
+import static org.apache.commons.lang3.math.NumberUtils.toLong;
+
+/**
+ * Retention and tiering policy of the reports kept in the local storage.
+ * Zero value disables the corresponding limit.
+ */
+class AllureStorageConfig implements Serializable {
+    private static final int DEFAULT_KEEP_SUCCESSFUL = 1;
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+    private final long maxSizeMb;
+    private final int maxBuilds;
+    private final int maxAgeDays;
+    private final int keepSuccessful;
+    private final int packAfterDays;
+
+    AllureStorageConfig(final String maxSizeMb,
+                        final String maxBuilds,
+                        final String maxAgeDays,
+                        final String keepSuccessful,
+                        final String packAfterDays) {
+        this.maxSizeMb = Math.max(0, toLong(maxSizeMb));
+        this.maxBuilds = Math.max(0, toInt(maxBuilds));
+        this.maxAgeDays = Math.max(0, toInt(maxAgeDays));
+        this.keepSuccessful = Math.max(0, toInt(keepSuccessful, DEFAULT_KEEP_SUCCESSFUL));
+        this.packAfterDays = Math.max(0, toInt(packAfterDays));
+    }
+
+    @NotNull
+    static AllureStorageConfig fromContext(final Map context) {
+        return new AllureStorageConfig(
+                getSingleValue(context, ALLURE_CONFIG_RETENTION_MAX_SIZE),
+                getSingleValue(context, ALLURE_CONFIG_RETENTION_MAX_BUILDS),
+                getSingleValue(context, ALLURE_CONFIG_RETENTION_MAX_AGE),
+                getSingleValue(context, ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL),
+                getSingleValue(context, ALLURE_CONFIG_STORAGE_PACK_AFTER)
+        );
+    }
+
+    @Nullable
+    private static String getSingleValue(final Map context,
+                                         final String key) {
+        return Optional.ofNullable(context.get(key))
+                .map(value -> value instanceof String[] ? ((String[]) value)[0] : (String) value)
+                .orElse(null);
+    }
+
+    void toContext(final @NotNull Map<String, Object> context) {
+        context.put(ALLURE_CONFIG_RETENTION_MAX_SIZE, getMaxSizeMb());
+        context.put(ALLURE_CONFIG_RETENTION_MAX_BUILDS, getMaxBuilds());
+        context.put(ALLURE_CONFIG_RETENTION_MAX_AGE, getMaxAgeDays());
+        context.put(ALLURE_CONFIG_RETENTION_KEEP_SUCCESSFUL, getKeepSuccessful());
+        context.put(ALLURE_CONFIG_STORAGE_PACK_AFTER, getPackAfterDays());
+    }
+
+    boolean isRetentionEnabled() {
+        return maxSizeMb > 0 || maxBuilds > 0 || maxAgeDays > 0;
+    }
+
+    boolean isPackingEnabled() {
+        return packAfterDays > 0;
+    }
+
+    long getMaxSizeMb() {
+        return maxSizeMb;
+    }
+
+    long getMaxSizeBytes() {
+        return maxSizeMb * BYTES_IN_MB;
+    }
+
+    int getMaxBuilds() {
+        return maxBuilds;
+    }
+
+    int getMaxAgeDays() {
+        return maxAgeDays;
+    }
+
+    int getKeepSuccessful() {
+        return keepSuccessful;
+    }
+
+    int getPackAfterDays() {
+        return packAfterDays;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import io.qameta.allure.bamboo.LocalReportStorage.StoredReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.atlassian.bamboo.plan.PlanKeys.getPlanResultKey;
+import static java.lang.Long.getLong;
+import static java.util.Comparator.comparingInt;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Background job which applies the retention policy to the reports kept in the local storage
+ * and packs the old ones.
+ */
+public class AllureStorageSweeper implements LifecycleAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllureStorageSweeper.class);
+    private static final long SWEEP_INTERVAL_MIN = getLong("allure.storage.sweep.interval.min", 60);
+    private static final long STATIC_MAX_UNUSED_DAYS = getLong("allure.static.max.unused.days", 180);
+
+    private final AllureSettingsManager settingsManager;
+    private final AllureArtifactsManager artifactsManager;
+    private final ResultsSummaryManager resultsSummaryManager;
+    private ScheduledExecutorService executor;
+
+    public AllureStorageSweeper(final AllureSettingsManager settingsManager,
+                                final AllureArtifactsManager artifactsManager,
+                                final ResultsSummaryManager resultsSummaryManager) {
+        this.settingsManager = settingsManager;
+        this.artifactsManager = artifactsManager;
+        this.resultsSummaryManager = resultsSummaryManager;
+    }
+
+    @Override
+    public void onStart() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "allure-storage-sweeper");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweepQuietly, SWEEP_INTERVAL_MIN, SWEEP_INTERVAL_MIN, MINUTES);
+    }
+
+    @Override
+    public void onStop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            LOGGER.error("Failed to apply retention policy to Allure Reports", e);
+        }
+    }
+
+    void sweep() throws IOException {
+        artifactsManager.getLocalStorage().cleanWorkArea(DAYS.toMillis(1));
+        artifactsManager.getStaticAssetStore().cleanUp(DAYS.toMillis(STATIC_MAX_UNUSED_DAYS));
+        final AllureStorageConfig config = settingsManager.getStorageSettings();
+        final List<StoredReport> reports = artifactsManager.getLocalStorage().listReports();
+        if (config.isRetentionEnabled()) {
+            reports.removeAll(applyRetention(config, reports));
+        }
+        if (config.isPackingEnabled()) {
+            packOldReports(reports, config.getPackAfterDays());
+        }
+    }
+
+    private Set<StoredReport> applyRetention(final AllureStorageConfig config,
+                                             final List<StoredReport> reports) throws IOException {
+        final Set<StoredReport> pinned = getPinnedReports(reports, config.getKeepSuccessful());
+        final Set<StoredReport> evicted = new LinkedHashSet<>();
+        for (StoredReport report : selectEvicted(config, reports, pinned, System.currentTimeMillis())) {
+            LOGGER.info("Evicting Allure Report {}-{} from the local storage",
+                    report.getPlanKey(), report.getBuildNumber());
+            if (artifactsManager.evictReport(report.getPlanKey(), report.getBuildNumber(), report.getPublishedAt())) {
+                evicted.add(report);
+            } else {
+                LOGGER.info("Allure Report {}-{} has been republished, keeping it",
+                        report.getPlanKey(), report.getBuildNumber());
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Selects the reports the retention policy evicts: the reports older than the max age, the reports beyond
+     * the max number of builds of their plan and then the least recently viewed reports until the storage fits
+     * the max size. Pinned reports are never selected.
+     */
+    static Set<StoredReport> selectEvicted(final AllureStorageConfig config,
+                                           final List<StoredReport> reports,
+                                           final Set<StoredReport> pinned,
+                                           final long now) {
+        final Set<StoredReport> evicted = new LinkedHashSet<>();
+        if (config.getMaxAgeDays() > 0) {
+            final long minPublishedAt = now - DAYS.toMillis(config.getMaxAgeDays());
+            reports.stream()
+                    .filter(report -> report.getPublishedAt() < minPublishedAt)
+                    .forEach(evicted::add);
+        }
+        if (config.getMaxBuilds() > 0) {
+            byPlan(reports).forEach(planReports -> planReports.stream()
+                    .skip(config.getMaxBuilds())
+                    .forEach(evicted::add));
+        }
+        evicted.removeAll(pinned);
+        if (config.getMaxSizeBytes() > 0) {
+            evictLeastRecentlyViewed(reports, pinned, evicted, config.getMaxSizeBytes());
+        }
+        return evicted;
+    }
+
+    /**
+     * Moves the reports which are not likely to be viewed anymore to the cold tier. The packs are served
+     * as is and never extracted back.
+     */
+    private void packOldReports(final List<StoredReport> reports,
+                                final int packAfterDays) {
+        final long minPublishedAt = System.currentTimeMillis() - DAYS.toMillis(packAfterDays);
+        for (StoredReport report : reports) {
+            if (report.isPacked() || report.getPublishedAt() >= minPublishedAt) {
+                continue;
+            }
+            try {
+                LOGGER.info("Packing Allure Report {}-{}", report.getPlanKey(), report.getBuildNumber());
+                artifactsManager.packReport(report.getPlanKey(), report.getBuildNumber(), report.getPublishedAt());
+            } catch (IOException e) {
+                LOGGER.error("Failed to pack Allure Report {}-{}", report.getPlanKey(), report.getBuildNumber(), e);
+            }
+        }
+    }
+
+    private static void evictLeastRecentlyViewed(final List<StoredReport> reports,
+                                                 final Set<StoredReport> pinned,
+                                                 final Set<StoredReport> evicted,
+                                                 final long maxSize) {
+        long size = reports.stream()
+                .filter(report -> !evicted.contains(report))
+                .mapToLong(StoredReport::getSize)
+                .sum();
+        final Iterator<StoredReport> leastRecentlyViewed = reports.stream()
+                .filter(report -> !evicted.contains(report) && !pinned.contains(report))
+                .sorted(Comparator.comparingLong(StoredReport::getViewedAt))
+                .iterator();
+        while (size > maxSize && leastRecentlyViewed.hasNext()) {
+            final StoredReport report = leastRecentlyViewed.next();
+            evicted.add(report);
+            size -= report.getSize();
+        }
+    }
+
+    /**
+     * Returns the latest reports of successful builds for each plan which must never be evicted.
+     */
+    private Set<StoredReport> getPinnedReports(final List<StoredReport> reports,
+                                               final int keepSuccessful) {
+        final Set<StoredReport> pinned = new HashSet<>();
+        if (keepSuccessful == 0) {
+            return pinned;
+        }
+        for (List<StoredReport> planReports : byPlan(reports)) {
+            int found = 0;
+            for (StoredReport report : planReports) {
+                if (found >= keepSuccessful) {
+                    break;
+                }
+                final ResultsSummary summary = resultsSummaryManager.getResultsSummary(
+                        getPlanResultKey(report.getPlanKey(), report.getBuildNumber()));
+                if (summary != null && summary.isSuccessful()) {
+                    pinned.add(report);
+                    found++;
+                }
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Groups reports by plan, the latest builds go first.
+     */
+    private static Collection<List<StoredReport>> byPlan(final List<StoredReport> reports) {
+        return reports.stream()
+                .sorted(comparingInt(StoredReport::getBuildNumber).reversed())
+                .collect(groupingBy(StoredReport::getPlanKey, toList()))
+                .values();
+    }
+}
@@ -15,9 +15,6 @@
  */
 package io.qameta.allure.bamboo;
 
-import com.atlassian.bamboo.plan.PlanKeys;
-import com.atlassian.bamboo.resultsummary.ResultsSummary;
-import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
 import com.atlassian.plugin.web.Condition;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -28,10 +25,10 @@ import java.util.Map;
 public class AllureViewReportCondition implements Condition {
     private static final Logger LOGGER = LoggerFactory.getLogger(AllureViewReportCondition.class);
 
-    private final ResultsSummaryManager resultsSummaryManager;
+    private final AllureArtifactsManager artifactsManager;
 
-    public AllureViewReportCondition(final ResultsSummaryManager resultsSummaryManager) {
-        this.resultsSummaryManager = resultsSummaryManager;
+    public AllureViewReportCondition(final AllureArtifactsManager artifactsManager) {
+        this.artifactsManager = artifactsManager;
     }
 
     @Override
@@ -48,14 +45,7 @@ public class AllureViewReportCondition implements Condition {
         final String buildNumberString = (String) context.get("buildNumber");
         if (buildKey != null && buildNumberString != null) {
             try {
-                final int buildNumber = Integer.parseInt(buildNumberString);
-                final ResultsSummary resultsSummary = this.resultsSummaryManager
-                        .getResultsSummary(PlanKeys.getPlanResultKey(buildKey, buildNumber));
-                if (resultsSummary != null) {
-                    final AllureBuildResult buildResult = AllureBuildResult
-                            .fromCustomData(resultsSummary.getCustomBuildData());
-                    return buildResult.hasInfo() && (resultsSummary.isFinished() || resultsSummary.isNotBuilt());
-                }
+                return artifactsManager.isReportViewable(buildKey, buildNumberString);
             } catch (Exception e) {
                 LOGGER.error("Failed to evaluate condition", e);
             }
@@ -0,0 +1,272 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * HTTP client shared by everything that fetches artifacts and downloads over HTTP.
+ * Connections are kept alive and reused by the pool of the JVM, which takes a connection back once the body
+ * of its response is closed, so every response has to be closed. The number of requests to a host waiting
+ * for their response is limited, bodies are read outside of the limit so that slow readers do not hold up
+ * other requests to the host. The size of the pool per host is set by the http.maxConnections system property.
+ */
+public class ArtifactHttpClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactHttpClient.class);
+    // allure.download.conn.timeout.sec is the property downloads of Allure used before the client was shared
+    private static final int CONNECT_TIMEOUT_MS = (int) SECONDS.toMillis(
+            getInteger("allure.http.connect.timeout.sec", getInteger("allure.download.conn.timeout.sec", 20)));
+    private static final int READ_TIMEOUT_MS = (int) SECONDS.toMillis(
+            getInteger("allure.http.read.timeout.sec", 60));
+    private static final int DOWNLOAD_TIMEOUT_MS = (int) SECONDS.toMillis(
+            getInteger("allure.download.timeout.sec", 120));
+    private static final int MAX_REQUESTS_PER_HOST = getInteger("allure.http.max.per.host", 32);
+    private static final long ACQUIRE_TIMEOUT_SEC = getInteger("allure.http.acquire.timeout.sec", 30);
+
+    private final int maxRequestsPerHost;
+    private final long acquireTimeoutMs;
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    public ArtifactHttpClient() {
+        this(MAX_REQUESTS_PER_HOST, SECONDS.toMillis(ACQUIRE_TIMEOUT_SEC));
+    }
+
+    ArtifactHttpClient(final int maxRequestsPerHost,
+                       final long acquireTimeoutMs) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * Sends a request. The response holds the connection until it is closed, or its body is.
+     *
+     * @param url     HTTP or HTTPS URL
+     * @param method  request method
+     * @param headers request headers
+     * @return response
+     * @throws IOException if the request fails or the host has too many requests waiting for a response
+     */
+    public Response execute(final String url,
+                            final String method,
+                            final Map<String, String> headers) throws IOException {
+        return execute(new URL(url), method, headers, READ_TIMEOUT_MS);
+    }
+
+    /**
+     * Opens the content of the URL, failing on error statuses.
+     *
+     * @param url HTTP or HTTPS URL
+     * @return stream of the body which returns the connection to the pool on close
+     * @throws IOException if the request fails or is not successful
+     */
+    public InputStream openStream(final String url) throws IOException {
+        final Response response = execute(url, "GET", Collections.emptyMap());
+        if (response.getStatus() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            response.close();
+            throw new IOException("Server answered " + response.getStatus() + " for " + url);
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Downloads the content of the URL to the file.
+     *
+     * @param url    HTTP or HTTPS URL
+     * @param target file to download to
+     * @throws IOException if the download fails
+     */
+    public void download(final URL url,
+                         final Path target) throws IOException {
+        try (Response response = execute(url, "GET", Collections.singletonMap("Pragma", "no-cache"),
+                DOWNLOAD_TIMEOUT_MS)) {
+            if (response.getStatus() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new IOException("Server answered " + response.getStatus() + " for " + url);
+            }
+            try (InputStream input = response.getBody()) {
+                Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests sent, failed and open and the number of bytes received since the start.
+     */
+    public Map<String, Long> getMetrics() {
+        final Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.get());
+        metrics.put("failures", failures.get());
+        metrics.put("active", active.get());
+        metrics.put("bytesReceived", bytesReceived.get());
+        return metrics;
+    }
+
+    private Response execute(final URL url,
+                             final String method,
+                             final Map<String, String> headers,
+                             final int readTimeout) throws IOException {
+        if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+            throw new MalformedURLException("Not an HTTP URL: " + url);
+        }
+        final Semaphore permits = hostPermits.computeIfAbsent(url.getAuthority(),
+                host -> new Semaphore(maxRequestsPerHost));
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, MILLISECONDS)) {
+                throw new IOException("Too many concurrent requests to " + url.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + url.getHost(), e);
+        }
+        requests.incrementAndGet();
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(readTimeout);
+            connection.setInstanceFollowRedirects(true);
+            connection.setRequestMethod(method);
+            headers.forEach(connection::setRequestProperty);
+            connection.connect();
+            final Response response = new Response(connection, connection.getResponseCode());
+            active.incrementAndGet();
+            return response;
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Response of an artifact storage. Closing it returns the connection to the pool.
+     */
+    public final class Response implements Closeable {
+
+        private final HttpURLConnection connection;
+        private final int status;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private InputStream body;
+
+        private Response(final HttpURLConnection connection,
+                         final int status) {
+            this.connection = connection;
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        @Nullable
+        public String getHeader(final String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Nullable
+        public String getContentType() {
+            return connection.getContentType();
+        }
+
+        /**
+         * Returns the body of the response, closing it closes the response.
+         *
+         * @return body of the response
+         * @throws IOException if the body cannot be read
+         */
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                final InputStream input = status >= HttpURLConnection.HTTP_BAD_REQUEST
+                        ? connection.getErrorStream() : connection.getInputStream();
+                body = new FilterInputStream(input == null ? new ByteArrayInputStream(new byte[0]) : input) {
+                    @Override
+                    public int read() throws IOException {
+                        final int read = super.read();
+                        if (read >= 0) {
+                            bytesReceived.incrementAndGet();
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public int read(final byte[] buffer,
+                                    final int offset,
+                                    final int length) throws IOException {
+                        final int read = super.read(buffer, offset, length);
+                        if (read > 0) {
+                            bytesReceived.addAndGet(read);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public void close() {
+                        Response.this.close();
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                final InputStream input = status >= HttpURLConnection.HTTP_BAD_REQUEST
+                        ? connection.getErrorStream() : connection.getInputStream();
+                if (input != null) {
+                    input.close();
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close connection to {}", connection.getURL(), e);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes the body of an asynchronous response whenever the container is ready to accept it.
+ * The content is read on the executor of the responses being written, so neither a slow client
+ * nor a slow artifact storage holds a thread of the container while the response is being written.
+ */
+class AsyncBodyWriter implements WriteListener, AsyncListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncBodyWriter.class);
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream output;
+    private final InputStream input;
+    private final Executor executor;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private long remaining;
+
+    /**
+     * @param length number of bytes to write, or a negative value to write the input until its end
+     */
+    AsyncBodyWriter(final AsyncContext asyncContext,
+                    final ServletOutputStream output,
+                    final InputStream input,
+                    final long length,
+                    final Executor executor) {
+        this.asyncContext = asyncContext;
+        this.output = output;
+        this.input = input;
+        this.remaining = length < 0 ? Long.MAX_VALUE : length;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onWritePossible() {
+        try {
+            executor.execute(this::write);
+        } catch (RejectedExecutionException e) {
+            onError(e);
+        }
+    }
+
+    /**
+     * Writes as long as the container accepts the content without blocking,
+     * the container calls {@link #onWritePossible()} again once it can accept more.
+     */
+    private void write() {
+        try {
+            while (output.isReady()) {
+                final int read = remaining > 0 ? input.read(buffer, 0, (int) Math.min(buffer.length, remaining)) : -1;
+                if (read < 0) {
+                    complete();
+                    return;
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        LOGGER.debug("Failed to write the file of Allure Report", t);
+        complete();
+    }
+
+    private void complete() {
+        IOUtils.closeQuietly(input);
+        if (completed.compareAndSet(false, true)) {
+            asyncContext.complete();
+        }
+    }
+
+    @Override
+    public void onComplete(final AsyncEvent event) {
+        completed.set(true);
+        IOUtils.closeQuietly(input);
+    }
+
+    @Override
+    public void onTimeout(final AsyncEvent event) {
+        IOUtils.closeQuietly(input);
+    }
+
+    @Override
+    public void onError(final AsyncEvent event) {
+        IOUtils.closeQuietly(input);
+    }
+
+    @Override
+    public void onStartAsync(final AsyncEvent event) {
+        // nothing to do
+    }
+}
@@ -35,6 +35,7 @@ public class ConfigureAllureReportAction extends GlobalAdminAction implements Pr
     @Override
     public String execute() throws Exception {
         settingsManager.saveSettings(AllureGlobalConfig.fromContext(getStringArrayMap()));
+        settingsManager.saveStorageSettings(AllureStorageConfig.fromContext(getStringArrayMap()));
         return super.execute();
     }
 
@@ -58,6 +59,7 @@ public class ConfigureAllureReportAction extends GlobalAdminAction implements Pr
     public void prepare() throws Exception {
         this.config = getAllureConfig();
         getAllureConfig().toContext(ActionContext.getContext().getContextMap());
+        settingsManager.getStorageSettings().toContext(ActionContext.getContext().getContextMap());
     }
 
     public AllureGlobalConfig getConfig() {
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.Comparator.reverseOrder;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.lang3.math.NumberUtils.isDigits;
+
+/**
+ * Per-plan store of the history generated by Allure. Every build saves its history as a new version
+ * named by the build number, so concurrent builds of the same plan never overwrite each other.
+ */
+class HistoryStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryStore.class);
+    private static final String HISTORY_SUBDIR = "allure-history";
+    private static final int KEPT_VERSIONS = 3;
+
+    private final Path root;
+
+    HistoryStore(final String localStoragePath) {
+        this.root = Paths.get(localStoragePath).resolve(HISTORY_SUBDIR);
+    }
+
+    /**
+     * Returns the latest version of the plan history saved by a build before the given one.
+     */
+    Optional<Path> getLatestVersion(final String planKey,
+                                    final int buildNumber) throws IOException {
+        return getVersions(planKey).stream()
+                .filter(version -> version < buildNumber)
+                .findFirst()
+                .map(version -> root.resolve(planKey).resolve(String.valueOf(version)));
+    }
+
+    /**
+     * Saves the history generated by the build as a new version and prunes the old ones.
+     * The version appears at once, readers never see it partially written. A version saved before
+     * by the same build is moved aside first and removed only once the new one is in place,
+     * it is moved back if the new one cannot be.
+     */
+    void save(final String planKey,
+              final int buildNumber,
+              final Path historyDir) throws IOException {
+        final Path planDir = root.resolve(planKey);
+        final Path staging = planDir.resolve("." + UUID.randomUUID());
+        final Path replaced = planDir.resolve("." + UUID.randomUUID());
+        final Path version = planDir.resolve(String.valueOf(buildNumber));
+        try {
+            Files.createDirectories(staging);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(historyDir, Files::isRegularFile)) {
+                for (Path file : files) {
+                    Files.copy(file, staging.resolve(file.getFileName()));
+                }
+            }
+            if (Files.exists(version)) {
+                Files.move(version, replaced, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try {
+                Files.move(staging, version, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (Files.exists(replaced)) {
+                    Files.move(replaced, version, StandardCopyOption.ATOMIC_MOVE);
+                }
+                throw e;
+            }
+        } finally {
+            for (Path leftover : new Path[]{staging, replaced}) {
+                if (Files.exists(leftover)) {
+                    deleteDirectory(leftover.toFile());
+                }
+            }
+        }
+        prune(planKey);
+    }
+
+    /**
+     * Links the files of the version into the directory, copying them if links are not supported.
+     */
+    void linkInto(final Path version,
+                  final Path targetDir) throws IOException {
+        Files.createDirectories(targetDir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(version, Files::isRegularFile)) {
+            for (Path file : files) {
+                final Path target = targetDir.resolve(file.getFileName());
+                Files.deleteIfExists(target);
+                try {
+                    Files.createLink(target, file);
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    Files.copy(file, target);
+                }
+            }
+        }
+    }
+
+    private void prune(final String planKey) throws IOException {
+        final List<Integer> versions = getVersions(planKey);
+        for (Integer version : versions.subList(Math.min(KEPT_VERSIONS, versions.size()), versions.size())) {
+            LOGGER.debug("Removing history version {} of {}", version, planKey);
+            deleteDirectory(root.resolve(planKey).resolve(String.valueOf(version)).toFile());
+        }
+    }
+
+    /**
+     * Returns the saved versions of the plan history, the latest go first.
+     */
+    private List<Integer> getVersions(final String planKey) throws IOException {
+        final List<Integer> versions = new ArrayList<>();
+        final Path planDir = root.resolve(planKey);
+        if (!Files.isDirectory(planDir)) {
+            return versions;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(planDir,
+                dir -> Files.isDirectory(dir) && isDigits(dir.getFileName().toString()))) {
+            dirs.forEach(dir -> versions.add(Integer.parseInt(dir.getFileName().toString())));
+        }
+        versions.sort(reverseOrder());
+        return versions;
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.google.common.util.concurrent.Striped;
+import io.qameta.allure.bamboo.util.BlobStore;
+import io.qameta.allure.bamboo.util.ZipUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.moveDirectory;
+import static org.apache.commons.lang3.StringUtils.removeEnd;
+import static org.apache.commons.lang3.math.NumberUtils.isDigits;
+
+/**
+ * Layout of the reports kept in the local storage of Bamboo server.
+ */
+class LocalReportStorage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalReportStorage.class);
+    private static final String REPORTS_SUBDIR = "allure-reports";
+    private static final String BLOBS_SUBDIR = "allure-blobs";
+    private static final String META_SUBDIR = "allure-reports-meta";
+    private static final String WORK_SUBDIR = "allure-work";
+    private static final String VIEWED_SUFFIX = ".viewed";
+    private static final String EVICTED_SUFFIX = ".evicted";
+    private static final String PACK_SUFFIX = ".pack";
+    private static final String HISTORY_POINTER = "latest-history";
+    private static final Object HISTORY_POINTER_LOCK = new Object();
+    private static final String LINK_COUNT_ATTRIBUTES = "unix:size,nlink";
+    private static final Striped<Lock> REPORT_LOCKS = Striped.lock(64);
+
+    private final Path root;
+
+    LocalReportStorage(final String localStoragePath) {
+        this.root = Paths.get(localStoragePath);
+    }
+
+    Path getReportDir(final String planKey,
+                      final String buildNumber) {
+        return root.resolve(REPORTS_SUBDIR).resolve(planKey).resolve(buildNumber);
+    }
+
+    /**
+     * Returns the pack the report of the build is compacted into once it gets old.
+     */
+    Path getReportPack(final String planKey,
+                       final String buildNumber) {
+        return root.resolve(REPORTS_SUBDIR).resolve(planKey).resolve(buildNumber + PACK_SUFFIX);
+    }
+
+    /**
+     * Compacts the report of the build into a single pack and releases its files.
+     * The pack keeps the publish time of the report, so the retention policy treats it the same way.
+     *
+     * @param publishedAt publish time of the report as it was listed
+     * @return false if the report has been republished or removed since it was listed
+     */
+    boolean pack(final String planKey,
+                 final String buildNumber,
+                 final long publishedAt) throws IOException {
+        final Lock lock = getLock(planKey, buildNumber);
+        lock.lock();
+        try {
+            final Path reportDir = getReportDir(planKey, buildNumber);
+            if (!Files.isDirectory(reportDir) || Files.getLastModifiedTime(reportDir).toMillis() > publishedAt) {
+                return false;
+            }
+            final Path workDir = createWorkDir();
+            final Path pack = workDir.resolve(buildNumber + PACK_SUFFIX);
+            try {
+                ZipUtil.packFolder(reportDir, pack, BlobStore.MANIFEST_FILE);
+                Files.setLastModifiedTime(pack, Files.getLastModifiedTime(reportDir));
+                Files.move(pack, getReportPack(planKey, buildNumber), StandardCopyOption.ATOMIC_MOVE);
+                getBlobStore().delete(reportDir);
+            } finally {
+                getBlobStore().delete(workDir);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates a new directory in the work area, which is on the same file system as the reports.
+     */
+    Path createWorkDir() throws IOException {
+        final Path workDir = root.resolve(WORK_SUBDIR).resolve(UUID.randomUUID().toString());
+        Files.createDirectories(workDir);
+        return workDir;
+    }
+
+    /**
+     * Removes the work directories left behind for longer than the given time.
+     */
+    void cleanWorkArea(final long maxAgeMs) throws IOException {
+        final Path workArea = root.resolve(WORK_SUBDIR);
+        if (!Files.isDirectory(workArea)) {
+            return;
+        }
+        final long minModifiedAt = System.currentTimeMillis() - maxAgeMs;
+        try (DirectoryStream<Path> workDirs = Files.newDirectoryStream(workArea)) {
+            for (Path workDir : workDirs) {
+                if (Files.getLastModifiedTime(workDir).toMillis() < minModifiedAt) {
+                    LOGGER.info("Removing stale work directory {}", workDir);
+                    getBlobStore().delete(workDir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the generated report into the storage replacing the previous report of the same build.
+     * The previous report is swapped out only once the new one is complete.
+     */
+    void publish(final File reportDir,
+                 final String planKey,
+                 final String buildNumber) throws IOException {
+        final Lock lock = getLock(planKey, buildNumber);
+        lock.lock();
+        try {
+            replaceReport(reportDir, planKey, buildNumber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void replaceReport(final File reportDir,
+                               final String planKey,
+                               final String buildNumber) throws IOException {
+        final BlobStore blobStore = getBlobStore();
+        final Path sourceDir = reportDir.toPath();
+        final Path destDir = getReportDir(planKey, buildNumber);
+        Files.createDirectories(destDir.getParent());
+        try {
+            blobStore.deduplicate(sourceDir);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to deduplicate files of Allure Report in {}", sourceDir, e);
+        }
+        Path previousDir = null;
+        if (Files.exists(destDir)) {
+            previousDir = createWorkDir().resolve(buildNumber);
+            Files.move(destDir, previousDir, StandardCopyOption.ATOMIC_MOVE);
+        }
+        try {
+            moveReport(sourceDir, destDir);
+        } catch (IOException e) {
+            blobStore.delete(destDir);
+            if (previousDir != null) {
+                Files.move(previousDir, destDir, StandardCopyOption.ATOMIC_MOVE);
+                blobStore.delete(previousDir.getParent());
+            }
+            throw e;
+        }
+        if (previousDir != null) {
+            blobStore.delete(previousDir.getParent());
+        }
+        Files.deleteIfExists(getReportPack(planKey, buildNumber));
+        Files.setLastModifiedTime(destDir, FileTime.fromMillis(System.currentTimeMillis()));
+        Files.deleteIfExists(getMarker(planKey, buildNumber, EVICTED_SUFFIX));
+        markViewed(planKey, buildNumber);
+    }
+
+    /**
+     * Moves the report directory, copying it when it is on another file system. A failed copy may leave
+     * a partial report in the destination.
+     */
+    private static void moveReport(final Path sourceDir,
+                                   final Path destDir) throws IOException {
+        try {
+            Files.move(sourceDir, destDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOGGER.warn("Report {} is not on the same file system as the local storage, copying it", sourceDir);
+            moveDirectory(sourceDir.toFile(), destDir.toFile());
+        }
+    }
+
+    /**
+     * Removes the report of the build and leaves a mark that it has been evicted.
+     * Publishing and evicting the report of the same build never interleave.
+     *
+     * @param publishedAt publish time of the report as it was listed
+     * @return false if the report has been republished since it was listed and is kept
+     */
+    boolean evict(final String planKey,
+                  final String buildNumber,
+                  final long publishedAt) throws IOException {
+        final Lock lock = getLock(planKey, buildNumber);
+        lock.lock();
+        try {
+            if (getPublishedAt(planKey, buildNumber).filter(current -> current > publishedAt).isPresent()) {
+                return false;
+            }
+            getBlobStore().delete(getReportDir(planKey, buildNumber));
+            Files.deleteIfExists(getReportPack(planKey, buildNumber));
+            final Path evicted = getMarker(planKey, buildNumber, EVICTED_SUFFIX);
+            Files.createDirectories(evicted.getParent());
+            if (!Files.exists(evicted)) {
+                Files.createFile(evicted);
+            }
+            Files.deleteIfExists(getMarker(planKey, buildNumber, VIEWED_SUFFIX));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEvicted(final String planKey,
+                      final String buildNumber) {
+        return Files.exists(getMarker(planKey, buildNumber, EVICTED_SUFFIX));
+    }
+
+    void markViewed(final String planKey,
+                    final String buildNumber) {
+        final Path viewed = getMarker(planKey, buildNumber, VIEWED_SUFFIX);
+        try {
+            Files.createDirectories(viewed.getParent());
+            if (!Files.exists(viewed)) {
+                Files.createFile(viewed);
+            }
+            Files.setLastModifiedTime(viewed, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to mark Allure Report {}-{} as viewed", planKey, buildNumber, e);
+        }
+    }
+
+    /**
+     * Returns the latest build of the plan which has published a report with history.
+     */
+    Optional<Integer> getHistoryPointer(final String planKey) {
+        final Path pointer = getHistoryPointerFile(planKey);
+        try {
+            return Files.exists(pointer)
+                    ? Optional.of(Integer.parseInt(new String(Files.readAllBytes(pointer), UTF_8).trim()))
+                    : Optional.empty();
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Failed to read history pointer of {}", planKey, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Points the history of the plan to the build unless a later build is already pointed to.
+     * The pointer is replaced atomically, so readers never see a partially written value.
+     */
+    void updateHistoryPointer(final String planKey,
+                              final int buildNumber) throws IOException {
+        synchronized (HISTORY_POINTER_LOCK) {
+            final Optional<Integer> current = getHistoryPointer(planKey);
+            if (current.isPresent() && current.get() > buildNumber) {
+                return;
+            }
+            final Path pointer = getHistoryPointerFile(planKey);
+            Files.createDirectories(pointer.getParent());
+            final Path tmp = Files.createTempFile(pointer.getParent(), HISTORY_POINTER, null);
+            Files.write(tmp, String.valueOf(buildNumber).getBytes(UTF_8));
+            Files.move(tmp, pointer, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Drops the history pointer of the plan if it points to the build.
+     */
+    void invalidateHistoryPointer(final String planKey,
+                                  final int buildNumber) throws IOException {
+        synchronized (HISTORY_POINTER_LOCK) {
+            if (getHistoryPointer(planKey).filter(build -> build == buildNumber).isPresent()) {
+                Files.deleteIfExists(getHistoryPointerFile(planKey));
+            }
+        }
+    }
+
+    /**
+     * Lists all the reports currently kept in the storage.
+     */
+    List<StoredReport> listReports() throws IOException {
+        final List<StoredReport> reports = new ArrayList<>();
+        final Path reportsDir = root.resolve(REPORTS_SUBDIR);
+        if (!Files.isDirectory(reportsDir)) {
+            return reports;
+        }
+        try (DirectoryStream<Path> plans = Files.newDirectoryStream(reportsDir, Files::isDirectory)) {
+            for (Path planDir : plans) {
+                final String planKey = planDir.getFileName().toString();
+                try (DirectoryStream<Path> builds = Files.newDirectoryStream(planDir)) {
+                    for (Path build : builds) {
+                        final String name = build.getFileName().toString();
+                        if (Files.isDirectory(build) && isDigits(name)) {
+                            reports.add(readReport(planKey, name, build, false));
+                        } else if (name.endsWith(PACK_SUFFIX) && isDigits(removeEnd(name, PACK_SUFFIX))) {
+                            reports.add(readReport(planKey, removeEnd(name, PACK_SUFFIX), build, true));
+                        }
+                    }
+                }
+            }
+        }
+        return reports;
+    }
+
+    BlobStore getBlobStore() {
+        return new BlobStore(root.resolve(BLOBS_SUBDIR));
+    }
+
+    private StoredReport readReport(final String planKey,
+                                    final String buildNumber,
+                                    final Path report,
+                                    final boolean packed) throws IOException {
+        final long publishedAt = Files.getLastModifiedTime(report).toMillis();
+        final Path viewed = getMarker(planKey, buildNumber, VIEWED_SUFFIX);
+        final long viewedAt = Files.exists(viewed) ? Files.getLastModifiedTime(viewed).toMillis() : publishedAt;
+        final long size = packed ? Files.size(report) : getSize(report);
+        return new StoredReport(planKey, Integer.parseInt(buildNumber), publishedAt, viewedAt, size, packed);
+    }
+
+    /**
+     * Returns the size of the report where the files shared with other reports are split between them.
+     */
+    private long getSize(final Path buildDir) throws IOException {
+        long size = 0;
+        try (Stream<Path> files = Files.walk(buildDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                size += getSharedSize(file);
+            }
+        }
+        return size;
+    }
+
+    private long getSharedSize(final Path file) throws IOException {
+        try {
+            final Map<String, Object> attributes = Files.readAttributes(file, LINK_COUNT_ATTRIBUTES);
+            final int links = (Integer) attributes.get("nlink");
+            // one of the links belongs to the blob store
+            return (Long) attributes.get("size") / Math.max(1, links - 1);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return Files.size(file);
+        }
+    }
+
+    private Optional<Long> getPublishedAt(final String planKey,
+                                          final String buildNumber) throws IOException {
+        for (Path report : new Path[]{getReportDir(planKey, buildNumber), getReportPack(planKey, buildNumber)}) {
+            if (Files.exists(report)) {
+                return Optional.of(Files.getLastModifiedTime(report).toMillis());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Lock getLock(final String planKey,
+                         final String buildNumber) {
+        return REPORT_LOCKS.get(root.resolve(planKey).resolve(buildNumber));
+    }
+
+    private Path getMarker(final String planKey,
+                           final String buildNumber,
+                           final String suffix) {
+        return root.resolve(META_SUBDIR).resolve(planKey).resolve(buildNumber + suffix);
+    }
+
+    private Path getHistoryPointerFile(final String planKey) {
+        return root.resolve(META_SUBDIR).resolve(planKey).resolve(HISTORY_POINTER);
+    }
+
+    /**
+     * A report kept in the local storage.
+     */
+    static final class StoredReport {
+        private final String planKey;
+        private final int buildNumber;
+        private final long publishedAt;
+        private final long viewedAt;
+        private final long size;
+        private final boolean packed;
+
+        StoredReport(final String planKey,
+                     final int buildNumber,
+                     final long publishedAt,
+                     final long viewedAt,
+                     final long size,
+                     final boolean packed) {
+            this.planKey = planKey;
+            this.buildNumber = buildNumber;
+            this.publishedAt = publishedAt;
+            this.viewedAt = viewedAt;
+            this.size = size;
+            this.packed = packed;
+        }
+
+        String getPlanKey() {
+            return planKey;
+        }
+
+        int getBuildNumber() {
+            return buildNumber;
+        }
+
+        long getPublishedAt() {
+            return publishedAt;
+        }
+
+        long getViewedAt() {
+            return viewedAt;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        boolean isPacked() {
+            return packed;
+        }
+    }
+}
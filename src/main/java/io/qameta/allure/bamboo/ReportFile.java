@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import io.qameta.allure.bamboo.util.ReportManifest;
+
+import javax.annotation.Nullable;
+
+/**
+ * Requested file of a report: its URL, the key it is shared by between requests and its manifest entry,
+ * if the report has a manifest.
+ */
+final class ReportFile {
+    private final String url;
+    private final String key;
+    private final ReportManifest.Entry entry;
+
+    ReportFile(final String url,
+               final String key,
+               final @Nullable ReportManifest.Entry entry) {
+        this.url = url;
+        this.key = key;
+        this.entry = entry;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * Plan, build, publish time of the report and path of the file. A file of a rerun build gets a new key,
+     * so content cached for the previous run is never served for it.
+     */
+    String getKey() {
+        return key;
+    }
+
+    @Nullable
+    String getType() {
+        return entry == null ? null : entry.getType();
+    }
+
+    /**
+     * Size of the file from the manifest.
+     *
+     * @return size or -1 if it is not known
+     */
+    long getSize() {
+        return entry == null ? -1 : entry.getSize();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Shares a single upstream fetch of a small remote file between the concurrent requests of it.
+ * The fetched content is retained for a few seconds, so the requests that come right after are served from it too.
+ * Files of a report which has been published again are dropped by {@link #invalidateIf(Predicate)}.
+ */
+class ReportFileCoalescer {
+
+    static final long MAX_SIZE = getInteger("allure.report.coalesce.max.bytes", 2 * 1024 * 1024);
+    private static final long WAIT_TIMEOUT_SEC = getInteger("allure.report.coalesce.timeout.sec", 60);
+
+    private final ArtifactHttpClient httpClient;
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, byte[]> retained = CacheBuilder.newBuilder()
+            .maximumWeight(getInteger("allure.report.coalesce.retain.bytes", 16 * 1024 * 1024))
+            .weigher((String key, byte[] content) -> content.length)
+            .expireAfterWrite(getInteger("allure.report.coalesce.retain.sec", 5), SECONDS)
+            .build();
+
+    ReportFileCoalescer(final ArtifactHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Returns the content of the file, fetching it only if no other request is fetching it already.
+     *
+     * @param file remote file of a report, not larger than {@link #MAX_SIZE}
+     * @return content of the file
+     * @throws IOException if the file cannot be fetched
+     */
+    byte[] fetch(final ReportFile file) throws IOException {
+        final byte[] cached = retained.getIfPresent(file.getKey());
+        if (cached != null) {
+            return cached;
+        }
+        final CompletableFuture<byte[]> own = new CompletableFuture<>();
+        final CompletableFuture<byte[]> flight = inFlight.putIfAbsent(file.getKey(), own);
+        if (flight != null) {
+            return await(flight, file);
+        }
+        try {
+            final byte[] content = load(file);
+            if (inFlight.remove(file.getKey(), own)) {
+                retained.put(file.getKey(), content);
+            }
+            own.complete(content);
+            return content;
+        } catch (IOException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(file.getKey(), own);
+        }
+    }
+
+    /**
+     * Drops the retained content of the files and forgets their fetches in flight, so the next request
+     * of them fetches them anew. The content of a forgotten fetch still goes to the requests waiting for it,
+     * but it is not retained.
+     *
+     * @param keys matches the keys of the files to drop
+     */
+    void invalidateIf(final Predicate<String> keys) {
+        inFlight.keySet().removeIf(keys);
+        retained.asMap().keySet().removeIf(keys);
+    }
+
+    private byte[] load(final ReportFile file) throws IOException {
+        try (ArtifactHttpClient.Response upstream = httpClient.execute(file.getUrl(), "GET", Collections.emptyMap())) {
+            if (upstream.getStatus() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new IOException("Artifact storage answered " + upstream.getStatus() + " for " + file.getUrl());
+            }
+            try (InputStream input = upstream.getBody()) {
+                return IOUtils.toByteArray(input);
+            }
+        }
+    }
+
+    private static byte[] await(final CompletableFuture<byte[]> flight,
+                                final ReportFile file) throws IOException {
+        try {
+            return flight.get(WAIT_TIMEOUT_SEC, SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to fetch " + file.getUrl(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for " + file.getUrl(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + file.getUrl(), e);
+        }
+    }
+}
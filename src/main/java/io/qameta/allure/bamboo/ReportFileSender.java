@@ -0,0 +1,387 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import io.qameta.allure.bamboo.ArtifactHttpClient.Response;
+import io.qameta.allure.bamboo.util.HttpRanges;
+import io.qameta.allure.bamboo.util.HttpRanges.Range;
+import io.qameta.allure.bamboo.util.TinyLfuCache;
+import org.apache.commons.io.IOUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static java.lang.Long.getLong;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Sends the content of report files, whole or by the requested byte ranges.
+ * Files of the local storage are read from the requested positions, remote files are requested by ranges upstream.
+ * Plain files of the local storage are handed over to the container to be sent by sendfile if it supports that.
+ * HEAD requests are answered from the metadata of the files only.
+ * Concurrent requests of the same small remote file share a single fetch of it.
+ */
+class ReportFileSender {
+
+    private static final String RANGE = "Range";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CRLF = "\r\n";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final long MAX_CACHED_FILE_SIZE = getLong("allure.report.hot.cache.max.file.bytes", 1024 * 1024);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private final AllureArtifactsManager artifactsManager;
+    private final ArtifactHttpClient httpClient;
+    private final Executor executor;
+
+    ReportFileSender(final AllureArtifactsManager artifactsManager,
+                     final ArtifactHttpClient httpClient,
+                     final Executor executor) {
+        this.artifactsManager = artifactsManager;
+        this.httpClient = httpClient;
+        this.executor = executor;
+    }
+
+    /**
+     * Sends the file. Within an asynchronous request the body of a single part response is written
+     * as the client accepts it, in which case the asynchronous request is completed once it is written.
+     *
+     * @return true if the body is still being written asynchronously
+     */
+    boolean send(final HttpServletRequest request,
+                 final HttpServletResponse response,
+                 final ReportFile file) throws IOException {
+        response.setHeader("Accept-Ranges", "bytes");
+        final String fileUrl = file.getUrl();
+        final String range = isRangeApplicable(request, response) ? request.getHeader(RANGE) : null;
+        final long length = artifactsManager.getLocalArtifactSize(fileUrl);
+        final long size = file.getSize() >= 0 ? file.getSize() : length;
+        if (range == null && size >= 0
+                && size <= (length < 0 ? ReportFileCoalescer.MAX_SIZE : MAX_CACHED_FILE_SIZE)) {
+            return sendBuffered(request, response, file, length < 0);
+        }
+        if (length < 0) {
+            return sendRemote(request, response, fileUrl, range);
+        }
+        final List<Range> ranges = HttpRanges.parse(range, length);
+        if (ranges == null) {
+            response.setHeader(CONTENT_LENGTH, String.valueOf(length));
+            return length > 0 && copy(request, response, fileUrl, new Range(0, length - 1));
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(CONTENT_RANGE, "bytes */" + length);
+        } else if (ranges.size() == 1) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(CONTENT_RANGE, ranges.get(0).toContentRange(length));
+            response.setHeader(CONTENT_LENGTH, String.valueOf(ranges.get(0).getLength()));
+            return copy(request, response, fileUrl, ranges.get(0));
+        } else {
+            sendMultipart(response, fileUrl, ranges, length);
+        }
+        return false;
+    }
+
+    /**
+     * Answers a HEAD request from the size of the file, without reading its content.
+     * Unless the size is known from the manifest, remote files are asked for it upstream by a HEAD request as well.
+     */
+    void head(final HttpServletResponse response,
+              final ReportFile file) throws IOException {
+        response.setHeader("Accept-Ranges", "bytes");
+        final String fileUrl = file.getUrl();
+        final long length = file.getSize() >= 0 ? file.getSize() : artifactsManager.getLocalArtifactSize(fileUrl);
+        if (length >= 0) {
+            response.setHeader(CONTENT_LENGTH, String.valueOf(length));
+            return;
+        }
+        try (Response upstream = httpClient.execute(fileUrl, "HEAD", Collections.emptyMap())) {
+            final int status = upstream.getStatus();
+            if (status == HttpServletResponse.SC_FORBIDDEN || status == HttpServletResponse.SC_METHOD_NOT_ALLOWED) {
+                headByRange(response, fileUrl);
+                return;
+            }
+            checkStatus(upstream, fileUrl);
+            relayHeader(upstream, response, CONTENT_LENGTH);
+        }
+    }
+
+    /**
+     * Signed URLs are usually valid for GET requests only, so the size is taken from a single byte range.
+     */
+    private void headByRange(final HttpServletResponse response,
+                             final String fileUrl) throws IOException {
+        try (Response upstream = httpClient.execute(fileUrl, "GET", Collections.singletonMap(RANGE, "bytes=0-0"))) {
+            checkStatus(upstream, fileUrl);
+            final String contentRange = upstream.getHeader(CONTENT_RANGE);
+            if (upstream.getStatus() == HttpServletResponse.SC_PARTIAL_CONTENT && contentRange != null) {
+                final String length = contentRange.substring(contentRange.lastIndexOf('/') + 1).trim();
+                if (!"*".equals(length)) {
+                    response.setHeader(CONTENT_LENGTH, length);
+                }
+            } else {
+                relayHeader(upstream, response, CONTENT_LENGTH);
+            }
+        }
+    }
+
+    private static void checkStatus(final Response upstream,
+                                    final String fileUrl) throws IOException {
+        if (upstream.getStatus() >= HttpServletResponse.SC_BAD_REQUEST) {
+            throw new IOException("Artifact storage answered " + upstream.getStatus() + " for " + fileUrl);
+        }
+    }
+
+    /**
+     * Range is ignored if the If-Range validator does not match the report anymore.
+     */
+    private static boolean isRangeApplicable(final HttpServletRequest request,
+                                             final HttpServletResponse response) {
+        final String ifRange = request.getHeader("If-Range");
+        return ifRange == null || ifRange.trim().equals(response.getHeader("ETag"));
+    }
+
+    private void sendMultipart(final HttpServletResponse response,
+                               final String fileUrl,
+                               final List<Range> ranges,
+                               final long length) throws IOException {
+        final String boundary = UUID.randomUUID().toString();
+        final String contentType = Optional.ofNullable(response.getHeader(CONTENT_TYPE))
+                .orElse("application/octet-stream");
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        final ServletOutputStream output = response.getOutputStream();
+        for (Range range : ranges) {
+            output.write((CRLF + "--" + boundary + CRLF
+                    + CONTENT_TYPE + ": " + contentType + CRLF
+                    + CONTENT_RANGE + ": " + range.toContentRange(length) + CRLF + CRLF).getBytes(US_ASCII));
+            copy(response, fileUrl, range);
+        }
+        output.write((CRLF + "--" + boundary + "--" + CRLF).getBytes(US_ASCII));
+    }
+
+    /**
+     * Sends a single part of the file. Plain files of the local storage are handed over to the container
+     * to be sent by sendfile if it supports that, whether the request is asynchronous or not.
+     * Otherwise, within an asynchronous request the part is written as the client accepts it.
+     *
+     * @return true if the part is being written asynchronously
+     */
+    private boolean copy(final HttpServletRequest request,
+                         final HttpServletResponse response,
+                         final String fileUrl,
+                         final Range range) throws IOException {
+        final Path file = artifactsManager.getLocalArtifactFile(fileUrl);
+        if (file != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.getStart());
+            request.setAttribute(SENDFILE_END, range.getEnd() + 1);
+        } else if (request.isAsyncStarted()) {
+            return stream(request, response, artifactsManager.openArtifact(fileUrl, range.getStart()),
+                    range.getLength());
+        } else {
+            copy(response, fileUrl, range);
+        }
+        return false;
+    }
+
+    private boolean stream(final HttpServletRequest request,
+                           final HttpServletResponse response,
+                           final InputStream input,
+                           final long length) throws IOException {
+        final AsyncContext asyncContext = request.getAsyncContext();
+        final AsyncBodyWriter writer = new AsyncBodyWriter(
+                asyncContext, response.getOutputStream(), input, length, executor
+        );
+        asyncContext.addListener(writer);
+        response.getOutputStream().setWriteListener(writer);
+        return true;
+    }
+
+    private void copy(final HttpServletResponse response,
+                      final String fileUrl,
+                      final Range range) throws IOException {
+        final Path file = artifactsManager.getLocalArtifactFile(fileUrl);
+        if (file != null) {
+            transfer(file, response.getOutputStream(), range);
+            return;
+        }
+        try (InputStream input = artifactsManager.openArtifact(fileUrl, range.getStart())) {
+            IOUtils.copyLarge(input, response.getOutputStream(), 0, range.getLength());
+        }
+    }
+
+    /**
+     * Copies the range of the file through a buffer the thread reuses for every file it sends.
+     * The servlet API does not expose the channel of the connection, so the content passes through the heap
+     * unless the container sends the file itself.
+     */
+    private static void transfer(final Path file,
+                                 final OutputStream output,
+                                 final Range range) throws IOException {
+        final ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = range.getStart();
+            long remaining = range.getLength();
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                final int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    throw new EOFException("File " + file + " is shorter than expected");
+                }
+                output.write(buffer.array(), 0, read);
+                position += read;
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Sends a small file from the cache of the most requested files. On a miss, a remote file is fetched once
+     * for all the concurrent requests of it, and the content is offered to the cache.
+     */
+    private boolean sendBuffered(final HttpServletRequest request,
+                                 final HttpServletResponse response,
+                                 final ReportFile file,
+                                 final boolean remote) throws IOException {
+        final TinyLfuCache hotFiles = artifactsManager.getHotFiles();
+        ByteBuffer content = hotFiles.get(file.getKey());
+        if (content == null) {
+            final byte[] loaded;
+            if (remote) {
+                loaded = artifactsManager.getCoalescer().fetch(file);
+            } else {
+                try (InputStream input = artifactsManager.openArtifact(file.getUrl())) {
+                    loaded = IOUtils.toByteArray(input);
+                }
+            }
+            if (loaded.length <= MAX_CACHED_FILE_SIZE) {
+                hotFiles.put(file.getKey(), loaded);
+            }
+            content = ByteBuffer.wrap(loaded);
+        }
+        response.setHeader(CONTENT_LENGTH, String.valueOf(content.remaining()));
+        if (request.isAsyncStarted()) {
+            return stream(request, response, new ByteBufferInputStream(content), content.remaining());
+        }
+        final WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+        while (content.hasRemaining()) {
+            output.write(content);
+        }
+        return false;
+    }
+
+    /**
+     * Passes the range to the artifact storage and relays its partial response.
+     */
+    private boolean sendRemote(final HttpServletRequest request,
+                               final HttpServletResponse response,
+                               final String fileUrl,
+                               final String range) throws IOException {
+        final Response upstream = httpClient.execute(fileUrl, "GET",
+                range == null ? Collections.emptyMap() : Collections.singletonMap(RANGE, range));
+        final int status = upstream.getStatus();
+        if (status == HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+            upstream.close();
+            response.setStatus(status);
+            relayHeader(upstream, response, CONTENT_RANGE);
+            return false;
+        }
+        try {
+            checkStatus(upstream, fileUrl);
+        } catch (IOException e) {
+            upstream.close();
+            throw e;
+        }
+        if (status == HttpServletResponse.SC_PARTIAL_CONTENT) {
+            response.setStatus(status);
+            relayHeader(upstream, response, CONTENT_RANGE);
+            if (String.valueOf(upstream.getContentType()).startsWith("multipart/")) {
+                relayHeader(upstream, response, CONTENT_TYPE);
+            }
+        }
+        relayHeader(upstream, response, CONTENT_LENGTH);
+        if (request.isAsyncStarted()) {
+            return stream(request, response, upstream.getBody(), -1);
+        }
+        try (InputStream input = upstream.getBody()) {
+            IOUtils.copyLarge(input, response.getOutputStream());
+        }
+        return false;
+    }
+
+    private static void relayHeader(final Response upstream,
+                                    final HttpServletResponse response,
+                                    final String name) {
+        final String value = upstream.getHeader(name);
+        if (value != null) {
+            response.setHeader(name, value);
+        }
+    }
+
+    /**
+     * Reads the content of a buffer, which can be a direct one.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] target,
+                        final int offset,
+                        final int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, read);
+            return read;
+        }
+    }
+}
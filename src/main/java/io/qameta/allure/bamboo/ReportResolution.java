@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.atlassian.bamboo.build.artifact.ArtifactLinkDataProvider;
+
+import javax.annotation.Nullable;
+
+/**
+ * Everything needed to serve the files of a report, resolved once per build.
+ */
+final class ReportResolution {
+    private final AllureBuildResult buildResult;
+    private final boolean handlerFound;
+    private final boolean local;
+    private final ArtifactLinkDataProvider linkProvider;
+    private final String rootUrl;
+    private final boolean evicted;
+    private final long lastModified;
+
+    ReportResolution(final AllureBuildResult buildResult,
+                     final boolean handlerFound,
+                     final boolean local,
+                     final @Nullable ArtifactLinkDataProvider linkProvider,
+                     final @Nullable String rootUrl,
+                     final boolean evicted,
+                     final long lastModified) {
+        this.buildResult = buildResult;
+        this.handlerFound = handlerFound;
+        this.local = local;
+        this.linkProvider = linkProvider;
+        this.rootUrl = rootUrl;
+        this.evicted = evicted;
+        this.lastModified = lastModified;
+    }
+
+    AllureBuildResult getBuildResult() {
+        return buildResult;
+    }
+
+    boolean isHandlerFound() {
+        return handlerFound;
+    }
+
+    boolean isLocal() {
+        return local;
+    }
+
+    @Nullable
+    ArtifactLinkDataProvider getLinkProvider() {
+        return linkProvider;
+    }
+
+    /**
+     * Returns the root URL of the report when the artifacts are served by Bamboo file system handler.
+     */
+    @Nullable
+    String getRootUrl() {
+        return rootUrl;
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Returns the time the report was published at, zero if it is not known.
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the strong entity tag of the report files. A published report never changes,
+     * so the tag only depends on the time it was published at.
+     */
+    String getETag() {
+        return "\"" + Long.toHexString(lastModified) + "\"";
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.IOUtils.copy;
+import static org.apache.commons.io.output.NullOutputStream.NULL_OUTPUT_STREAM;
+
+/**
+ * Store of the UI assets shared by the reports. The assets only change with the Allure executable
+ * and the customizations of the UI, so every distinct asset is stored once under the label of the executable
+ * and its content hash, and the index pages of the reports refer to it there. The URLs of the assets never change,
+ * so browsers can cache them for good. Assets no report has been published with for a long time are removed,
+ * the reports keep their own copies of them.
+ */
+class StaticAssetStore {
+
+    static final Pattern LABEL_PATTERN = Pattern.compile("[\\w.-]+");
+    static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{16}");
+    private static final Logger LOGGER = LoggerFactory.getLogger(StaticAssetStore.class);
+    private static final String STATIC_SUBDIR = "allure-static";
+    private static final String INDEX_HTML = "index.html";
+    private static final List<String> SHARED_ASSETS = Arrays.asList("app.js", "styles.css");
+    private static final int HASH_LENGTH = 16;
+
+    private final Path root;
+
+    StaticAssetStore(final String localStoragePath) {
+        this.root = Paths.get(localStoragePath).resolve(STATIC_SUBDIR);
+    }
+
+    /**
+     * Stores the UI assets of the report, if they are not stored yet, and points the index page of the report
+     * to the stored ones. The assets are left in the report as well, so it stays complete.
+     *
+     * @param reportDir directory of the report
+     * @param label     label of the Allure executable the report is generated by, made of word characters,
+     *                  dots and dashes
+     * @param urlPrefix URL path the stored assets are served from
+     * @throws IOException if the assets cannot be stored
+     */
+    void share(final Path reportDir,
+               final String label,
+               final String urlPrefix) throws IOException {
+        final Path index = reportDir.resolve(INDEX_HTML);
+        if (!LABEL_PATTERN.matcher(label).matches() || !Files.isRegularFile(index)) {
+            return;
+        }
+        String html = new String(Files.readAllBytes(index), UTF_8);
+        for (String asset : SHARED_ASSETS) {
+            final Path file = reportDir.resolve(asset);
+            if (!Files.isRegularFile(file)) {
+                continue;
+            }
+            final String hash = hash(file);
+            store(file, root.resolve(label).resolve(hash).resolve(asset));
+            final String url = urlPrefix + "/" + label + "/" + hash + "/" + asset;
+            html = html.replace("\"" + asset + "\"", "\"" + url + "\"");
+        }
+        Files.write(index, html.getBytes(UTF_8));
+    }
+
+    /**
+     * Returns the stored asset.
+     *
+     * @return the file of the asset or empty if there is no such asset
+     */
+    Optional<Path> getAsset(final String label,
+                            final String hash,
+                            final String name) {
+        if (!LABEL_PATTERN.matcher(label).matches() || !HASH_PATTERN.matcher(hash).matches()
+                || !SHARED_ASSETS.contains(name)) {
+            return Optional.empty();
+        }
+        return Optional.of(root.resolve(label).resolve(hash).resolve(name)).filter(Files::isRegularFile);
+    }
+
+    /**
+     * Removes the assets no report has been published with for the given time.
+     *
+     * @param maxUnusedMs time since the assets were last shared
+     * @throws IOException if the store cannot be listed
+     */
+    void cleanUp(final long maxUnusedMs) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        final long minSharedAt = System.currentTimeMillis() - maxUnusedMs;
+        for (Path labelDir : list(root)) {
+            for (Path hashDir : list(labelDir)) {
+                if (getLastSharedAt(hashDir) < minSharedAt) {
+                    LOGGER.info("Removing static assets {} of Allure Reports, they have not been used for long",
+                            root.relativize(hashDir));
+                    FileUtils.deleteDirectory(hashDir.toFile());
+                }
+            }
+            if (list(labelDir).isEmpty()) {
+                Files.deleteIfExists(labelDir);
+            }
+        }
+    }
+
+    private static long getLastSharedAt(final Path hashDir) throws IOException {
+        long lastSharedAt = 0;
+        for (Path asset : list(hashDir)) {
+            lastSharedAt = Math.max(lastSharedAt, Files.getLastModifiedTime(asset).toMillis());
+        }
+        return lastSharedAt;
+    }
+
+    private static List<Path> list(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.collect(toList());
+        }
+    }
+
+    /**
+     * Stores the asset, or marks the stored one as shared again, so it is not cleaned up.
+     */
+    private static void store(final Path file,
+                              final Path target) throws IOException {
+        if (Files.isRegularFile(target)) {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        final Path tmp = target.resolveSibling("." + UUID.randomUUID());
+        try {
+            Files.copy(file, tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String hash(final Path file) throws IOException {
+        try (DigestInputStream input = new DigestInputStream(Files.newInputStream(file),
+                MessageDigest.getInstance("SHA-256"))) {
+            copy(input, NULL_OUTPUT_STREAM);
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : input.getMessageDigest().digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.google.common.io.Files.asByteSource;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Content-addressed store for report files. Identical files are kept once under the store root
+ * and hard-linked into every report directory, the file system link count of a blob is its reference count.
+ */
+public final class BlobStore {
+
+    public static final String MANIFEST_FILE = ".allure-blobs";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlobStore.class);
+    private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+    private static final String TMP_LINK_SUFFIX = ".blob-tmp";
+    private static final Object LOCK = new Object();
+
+    private final Path root;
+
+    public BlobStore(final Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Replaces every file of the directory with a hard link to the blob having the same content.
+     * The hash of a blob is added to the manifest of the directory before the blob is linked, so the blobs
+     * linked before a failure are still released with the directory.
+     *
+     * @param dir directory of a published report
+     * @throws IOException if the directory cannot be read
+     */
+    public void deduplicate(final Path dir) throws IOException {
+        Files.createDirectories(root);
+        if (!isSupported()) {
+            LOGGER.debug("Hard link counts are not supported for {}, skipping deduplication", root);
+            return;
+        }
+        final List<Path> files = listFiles(dir);
+        final Set<String> hashes = new LinkedHashSet<>();
+        try (BufferedWriter manifest = Files.newBufferedWriter(dir.resolve(MANIFEST_FILE), StandardCharsets.UTF_8)) {
+            for (Path file : files) {
+                if (Files.size(file) == 0) {
+                    continue;
+                }
+                final String hash = hash(file);
+                if (hashes.add(hash)) {
+                    manifest.write(hash);
+                    manifest.newLine();
+                    manifest.flush();
+                }
+                link(file, getBlobPath(hash));
+            }
+        }
+    }
+
+    private static void link(final Path file,
+                             final Path blob) throws IOException {
+        Files.createDirectories(blob.getParent());
+        synchronized (LOCK) {
+            try {
+                Files.createLink(blob, file);
+            } catch (FileAlreadyExistsException e) {
+                final Path tmpLink = file.resolveSibling(file.getFileName() + TMP_LINK_SUFFIX);
+                Files.deleteIfExists(tmpLink);
+                Files.createLink(tmpLink, blob);
+                Files.move(tmpLink, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of the content of the file, which names its blob.
+     *
+     * @param file file to hash
+     * @return lowercase hex of the hash
+     * @throws IOException if the file cannot be read
+     */
+    public static String hash(final Path file) throws IOException {
+        return asByteSource(file.toFile()).hash(Hashing.sha256()).toString();
+    }
+
+    /**
+     * Deletes the directory and all the blobs which are no longer referenced by any other directory.
+     *
+     * @param dir directory containing published reports
+     */
+    public void delete(final Path dir) {
+        final Set<String> hashes = readManifests(dir);
+        FileUtils.deleteQuietly(dir.toFile());
+        synchronized (LOCK) {
+            for (String hash : hashes) {
+                final Path blob = getBlobPath(hash);
+                try {
+                    if (getLinkCount(blob) <= 1) {
+                        Files.deleteIfExists(blob);
+                    }
+                } catch (NoSuchFileException e) {
+                    LOGGER.debug("Blob {} has already been removed", blob);
+                } catch (IOException | UnsupportedOperationException e) {
+                    LOGGER.warn("Failed to release blob {}", blob, e);
+                }
+            }
+        }
+    }
+
+    private boolean isSupported() {
+        try {
+            getLinkCount(root);
+            return true;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Set<String> readManifests(final Path dir) {
+        final Set<String> hashes = new LinkedHashSet<>();
+        if (!Files.isDirectory(dir)) {
+            return hashes;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path manifest : (Iterable<Path>) files.filter(BlobStore::isManifest)::iterator) {
+                hashes.addAll(Files.readAllLines(manifest, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read blobs manifests of {}", dir, e);
+        }
+        return hashes;
+    }
+
+    private Path getBlobPath(final String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static int getLinkCount(final Path path) throws IOException {
+        return (Integer) Files.getAttribute(path, LINK_COUNT_ATTRIBUTE);
+    }
+
+    private static List<Path> listFiles(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !isManifest(file))
+                    .sorted()
+                    .collect(toList());
+        }
+    }
+
+    private static boolean isManifest(final Path file) {
+        return MANIFEST_FILE.equals(file.getFileName().toString());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compacts the history of Allure Report before it is passed to the generator.
+ * Files are streamed test by test, so the whole history is never kept in memory. Zero value of a limit disables it.
+ */
+public final class HistoryCompactor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryCompactor.class);
+    private static final String HISTORY_JSON = "history.json";
+    private static final List<String> TREND_FILES = Arrays.asList(
+            "history-trend.json", "categories-trend.json", "duration-trend.json");
+    private static final String ITEMS = "items";
+    private static final Pattern BUILD_NUMBER = Pattern.compile("/(\\d+)/?(?:#.*)?$");
+
+    private final ObjectMapper mapper = new JsonMapper();
+    private final int maxItems;
+    private final int maxAgeBuilds;
+    private final int maxTrendPoints;
+
+    /**
+     * @param maxItems       maximum number of history items kept per test
+     * @param maxAgeBuilds   number of builds after which a test that has not been run is dropped
+     * @param maxTrendPoints maximum number of points kept in each trend
+     */
+    public HistoryCompactor(final int maxItems,
+                            final int maxAgeBuilds,
+                            final int maxTrendPoints) {
+        this.maxItems = maxItems;
+        this.maxAgeBuilds = maxAgeBuilds;
+        this.maxTrendPoints = maxTrendPoints;
+    }
+
+    /**
+     * Compacts the history files in the directory. Every file is replaced rather than rewritten in place,
+     * so the files linked from elsewhere are left intact.
+     *
+     * @param historyDir  history directory
+     * @param buildNumber number of the build the report is generated for
+     */
+    public void compact(final @NotNull Path historyDir,
+                        final int buildNumber) {
+        final Path history = historyDir.resolve(HISTORY_JSON);
+        if ((maxItems > 0 || maxAgeBuilds > 0) && Files.isRegularFile(history)) {
+            replace(history, target -> compactHistory(history, target, buildNumber));
+        }
+        if (maxTrendPoints > 0) {
+            for (String trendFile : TREND_FILES) {
+                final Path trend = historyDir.resolve(trendFile);
+                if (Files.isRegularFile(trend)) {
+                    replace(trend, target -> compactTrend(trend, target));
+                }
+            }
+        }
+    }
+
+    private void compactHistory(final Path source,
+                                final Path target,
+                                final int buildNumber) throws IOException {
+        final JsonFactory factory = mapper.getFactory();
+        try (JsonParser parser = factory.createParser(source.toFile());
+             JsonGenerator generator = factory.createGenerator(target.toFile(), JsonEncoding.UTF8)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected content of " + source);
+            }
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String testId = parser.getCurrentName();
+                parser.nextToken();
+                final JsonNode test = mapper.readTree(parser);
+                final JsonNode items = test.path(ITEMS);
+                if (items.isArray() && isOutdated((ArrayNode) items, buildNumber)) {
+                    continue;
+                }
+                if (items.isArray() && maxItems > 0) {
+                    limit((ArrayNode) items, maxItems);
+                }
+                generator.writeFieldName(testId);
+                mapper.writeTree(generator, test);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Checks whether the latest run of the test is older than the limit. Items go from the latest to the oldest.
+     */
+    private boolean isOutdated(final ArrayNode items,
+                               final int buildNumber) {
+        if (maxAgeBuilds <= 0 || items.size() == 0) {
+            return false;
+        }
+        final Matcher matcher = BUILD_NUMBER.matcher(items.get(0).path("reportUrl").asText());
+        return matcher.find() && buildNumber - Integer.parseInt(matcher.group(1)) > maxAgeBuilds;
+    }
+
+    /**
+     * Keeps the latest half of the points as is and samples the older ones evenly.
+     */
+    private void compactTrend(final Path source,
+                              final Path target) throws IOException {
+        final JsonNode trend = mapper.readTree(source.toFile());
+        if (trend.isArray() && trend.size() > maxTrendPoints) {
+            final ArrayNode points = (ArrayNode) trend;
+            final int recent = (maxTrendPoints + 1) / 2;
+            final int sampled = maxTrendPoints - recent;
+            final ArrayNode compacted = mapper.createArrayNode();
+            for (int i = 0; i < recent; i++) {
+                compacted.add(points.get(i));
+            }
+            final double step = (double) (points.size() - recent) / Math.max(1, sampled);
+            for (int i = 0; i < sampled; i++) {
+                compacted.add(points.get(recent + (int) (i * step)));
+            }
+            mapper.writeValue(target.toFile(), compacted);
+        } else {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void limit(final ArrayNode items,
+                              final int max) {
+        while (items.size() > max) {
+            items.remove(items.size() - 1);
+        }
+    }
+
+    private void replace(final Path file,
+                         final Compaction compaction) {
+        final Path compacted = file.resolveSibling(file.getFileName() + ".compacted");
+        try {
+            compaction.apply(compacted);
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to compact history file {}, using it as is", file, e);
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException ex) {
+                LOGGER.debug("Failed to delete {}", compacted, ex);
+            }
+        }
+    }
+
+    /**
+     * Writes the compacted content of a history file.
+     */
+    @FunctionalInterface
+    private interface Compaction {
+        void apply(Path target) throws IOException;
+    }
+}
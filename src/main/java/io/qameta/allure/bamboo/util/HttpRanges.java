@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parser of the HTTP Range header, only byte ranges are supported.
+ */
+public final class HttpRanges {
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final int MAX_RANGES = 16;
+
+    private HttpRanges() {
+        // do not instantiate
+    }
+
+    /**
+     * Parses the ranges requested from a resource of the given length.
+     *
+     * @param header value of the Range header
+     * @param length length of the resource
+     * @return null if the header should be ignored and the whole resource sent,
+     * empty list if none of the ranges can be satisfied
+     */
+    @Nullable
+    public static List<Range> parse(final @Nullable String header,
+                                    final long length) {
+        if (header == null || !header.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        final String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        final List<Range> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            final String value = spec.trim();
+            final int dash = value.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                final Range range = dash == 0
+                        ? suffix(Long.parseLong(value.substring(1)), length)
+                        : range(value.substring(0, dash), value.substring(dash + 1), length);
+                if (range != null) {
+                    ranges.add(range);
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return ranges.isEmpty() ? Collections.emptyList() : ranges;
+    }
+
+    @Nullable
+    private static Range suffix(final long suffixLength,
+                                final long length) {
+        if (suffixLength <= 0 || length == 0) {
+            return null;
+        }
+        return new Range(Math.max(0, length - suffixLength), length - 1);
+    }
+
+    @Nullable
+    private static Range range(final String first,
+                               final String last,
+                               final long length) {
+        final long start = Long.parseLong(first);
+        final long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+        if (start < 0 || !last.isEmpty() && Long.parseLong(last) < start) {
+            throw new IllegalArgumentException("Invalid range " + first + "-" + last);
+        }
+        return start < length ? new Range(start, end) : null;
+    }
+
+    /**
+     * Range of bytes, both ends are inclusive.
+     */
+    public static final class Range {
+        private final long start;
+        private final long end;
+
+        public Range(final long start,
+                     final long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long getLength() {
+            return end - start + 1;
+        }
+
+        /**
+         * Returns the value of the Content-Range header for the range.
+         */
+        public String toContentRange(final long length) {
+            return "bytes " + start + "-" + end + "/" + length;
+        }
+    }
+}
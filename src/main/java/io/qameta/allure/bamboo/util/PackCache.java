@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Keeps the most recently used report packs open, so the central directory of a pack
+ * is read only once and its entries can be served without extracting the pack.
+ */
+public final class PackCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackCache.class);
+
+    private final Map<Path, Pack> packs;
+
+    public PackCache(final int maxOpenPacks) {
+        this.packs = new LinkedHashMap<Path, Pack>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Path, Pack> eldest) {
+                if (size() > maxOpenPacks) {
+                    eldest.getValue().retire();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the name of the entry to serve for the given path. Directories resolve to their index.html.
+     *
+     * @return the entry name or null if there is no such entry in the pack
+     */
+    public String resolveEntry(final Path packFile, final String path) throws IOException {
+        final Pack pack = acquire(packFile);
+        try {
+            final String prefix = path.isEmpty() || path.endsWith("/") ? path : path + "/";
+            for (String name : new String[]{path, prefix + "index.html"}) {
+                final ZipEntry entry = pack.zip.getEntry(name);
+                if (entry != null && !entry.isDirectory()) {
+                    return name;
+                }
+            }
+            return null;
+        } finally {
+            pack.release();
+        }
+    }
+
+    public InputStream openEntry(final Path packFile, final String name) throws IOException {
+        final Pack pack = acquire(packFile);
+        try {
+            return pack.open(name);
+        } finally {
+            pack.release();
+        }
+    }
+
+    public long getEntrySize(final Path packFile, final String name) throws IOException {
+        final Pack pack = acquire(packFile);
+        try {
+            final ZipEntry entry = pack.zip.getEntry(name);
+            return entry == null ? -1 : entry.getSize();
+        } finally {
+            pack.release();
+        }
+    }
+
+    /**
+     * Drops the pack from the cache, e.g. when it is replaced or deleted.
+     */
+    public synchronized void invalidate(final Path packFile) {
+        final Pack pack = packs.remove(packFile);
+        if (pack != null) {
+            pack.retire();
+        }
+    }
+
+    /**
+     * Returns the open pack with a reference taken, so it is not closed by an eviction until released.
+     */
+    private synchronized Pack acquire(final Path packFile) throws IOException {
+        Pack pack = packs.get(packFile);
+        if (pack == null) {
+            pack = new Pack(new ZipFile(packFile.toFile()));
+            packs.put(packFile, pack);
+        }
+        pack.acquire();
+        return pack;
+    }
+
+    /**
+     * An open pack which is closed once it is evicted from the cache and its last reference,
+     * a lookup in progress or an open stream, is released.
+     */
+    private static final class Pack {
+
+        private final ZipFile zip;
+        private int references;
+        private boolean retired;
+
+        private Pack(final ZipFile zip) {
+            this.zip = zip;
+        }
+
+        private synchronized void acquire() {
+            references++;
+        }
+
+        private synchronized InputStream open(final String name) throws IOException {
+            final ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                throw new IOException("Pack " + zip.getName() + " has no entry " + name);
+            }
+            final InputStream input = zip.getInputStream(entry);
+            references++;
+            return new FilterInputStream(input) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        super.close();
+                        release();
+                    }
+                }
+            };
+        }
+
+        private synchronized void release() {
+            references--;
+            closeIfUnused();
+        }
+
+        private synchronized void retire() {
+            retired = true;
+            closeIfUnused();
+        }
+
+        private void closeIfUnused() {
+            if (retired && references == 0) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close pack {}", zip.getName(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Manifest of the files of a report, written when the report is published. It lets the files be resolved,
+ * sized and typed without looking into the storage the report is published to.
+ */
+public final class ReportManifest {
+
+    public static final String MANIFEST_FILE = "allure-manifest.json";
+
+    private static final String INDEX_HTML = "index.html";
+    private static final String FILES = "files";
+    private static final String SIZE = "size";
+    private static final String HASH = "hash";
+    private static final String TYPE = "type";
+    private static final int SHA256_HEX_LENGTH = 64;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, Entry> files;
+    private final Map<String, Integer> directorySizes = new HashMap<>();
+
+    private ReportManifest(final Map<String, Entry> files) {
+        this.files = files;
+        files.keySet().forEach(path -> directorySizes.merge(getDirectory(path), 1, Integer::sum));
+    }
+
+    /**
+     * Writes the manifest of all the files of the report into the report directory.
+     *
+     * @param reportDir directory of the report
+     * @throws IOException if the report cannot be read or the manifest cannot be written
+     */
+    public static void write(final @NotNull Path reportDir) throws IOException {
+        final List<Path> files;
+        try (Stream<Path> stream = Files.walk(reportDir)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> !reportDir.relativize(file).toString().equals(MANIFEST_FILE))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        final Path tmp = reportDir.resolve(MANIFEST_FILE + ".tmp");
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(tmp.toFile(), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(FILES);
+            for (Path file : files) {
+                generator.writeObjectFieldStart(toEntryPath(reportDir.relativize(file)));
+                generator.writeNumberField(SIZE, Files.size(file));
+                generator.writeStringField(HASH, BlobStore.hash(file));
+                final String type = Files.probeContentType(file);
+                if (type != null) {
+                    generator.writeStringField(TYPE, type);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        Files.move(tmp, reportDir.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads the manifest.
+     *
+     * @param input content of the manifest
+     * @return manifest
+     * @throws IOException if the manifest cannot be parsed
+     */
+    public static ReportManifest read(final @NotNull InputStream input) throws IOException {
+        final Map<String, Entry> files = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                if (!FILES.equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                expect(parser.currentToken(), JsonToken.START_OBJECT);
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String path = parser.getCurrentName();
+                    expect(parser.nextToken(), JsonToken.START_OBJECT);
+                    files.put(path, readEntry(parser));
+                }
+            }
+        }
+        return new ReportManifest(files);
+    }
+
+    private static Entry readEntry(final JsonParser parser) throws IOException {
+        long size = -1;
+        String hash = null;
+        String type = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if (SIZE.equals(field)) {
+                size = parser.getLongValue();
+            } else if (HASH.equals(field)) {
+                hash = parser.getValueAsString();
+                if (hash != null && hash.length() != SHA256_HEX_LENGTH) {
+                    // checksum written by an older version of the plugin, too weak to tell the content apart
+                    hash = null;
+                }
+            } else if (TYPE.equals(field)) {
+                type = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Entry(size, hash, type);
+    }
+
+    private static void expect(final JsonToken actual,
+                               final JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Malformed report manifest, expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * Resolves the requested path to a file of the report, a directory resolves to its index page.
+     *
+     * @param filePath requested path
+     * @return path of the file or null if the report has no such file
+     */
+    @Nullable
+    public String resolve(final @NotNull String filePath) {
+        final String path = StringUtils.removeStart(filePath, "/");
+        if (files.containsKey(path)) {
+            return path;
+        }
+        final String index = path.isEmpty() || path.endsWith("/") ? path + INDEX_HTML : path + "/" + INDEX_HTML;
+        return files.containsKey(index) ? index : null;
+    }
+
+    @Nullable
+    public Entry getEntry(final String path) {
+        return files.get(path);
+    }
+
+    /**
+     * Returns the number of files directly in the directory of the given file.
+     *
+     * @param path path of a file of the report
+     * @return number of files in its directory
+     */
+    public int getDirectorySize(final String path) {
+        return directorySizes.getOrDefault(getDirectory(path), 0);
+    }
+
+    public static String getDirectory(final String path) {
+        return path.contains("/") ? StringUtils.substringBeforeLast(path, "/") : "";
+    }
+
+    private static String toEntryPath(final Path relative) {
+        final List<String> names = new ArrayList<>();
+        relative.forEach(name -> names.add(name.toString()));
+        return String.join("/", names);
+    }
+
+    /**
+     * Size, SHA-256 and MIME type of a file of the report.
+     */
+    public static final class Entry {
+
+        private final long size;
+        private final String hash;
+        private final String type;
+
+        public Entry(final long size,
+                     final @Nullable String hash,
+                     final @Nullable String type) {
+            this.size = size;
+            this.hash = hash;
+            this.type = type;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Nullable
+        public String getHash() {
+            return hash;
+        }
+
+        @Nullable
+        public String getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Reads the expiry of signed URLs of object storages: AWS and Google Cloud Storage signatures
+ * of versions 2 and 4 and Azure shared access signatures.
+ */
+public final class SignedUrls {
+
+    private static final DateTimeFormatter SIGNATURE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private SignedUrls() {
+        // do not instantiate
+    }
+
+    /**
+     * Returns the time the signature of the URL expires at.
+     *
+     * @param url URL of an object
+     * @return epoch millis, or -1 if the URL is not signed or its expiry cannot be read
+     */
+    public static long getExpiresAt(final String url) {
+        final String withoutFragment = StringUtils.substringBefore(url, "#");
+        final Map<String, String> query = parseQuery(StringUtils.substringAfter(withoutFragment, "?"));
+        try {
+            if (query.containsKey("X-Amz-Date") && query.containsKey("X-Amz-Expires")) {
+                return getExpiresAt(query.get("X-Amz-Date"), query.get("X-Amz-Expires"));
+            }
+            if (query.containsKey("X-Goog-Date") && query.containsKey("X-Goog-Expires")) {
+                return getExpiresAt(query.get("X-Goog-Date"), query.get("X-Goog-Expires"));
+            }
+            if (query.containsKey("Expires")) {
+                return SECONDS.toMillis(Long.parseLong(query.get("Expires")));
+            }
+            if (query.containsKey("se") && query.containsKey("sig")) {
+                return Instant.parse(query.get("se")).toEpochMilli();
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static long getExpiresAt(final String signedAt,
+                                     final String expiresInSeconds) {
+        return LocalDateTime.parse(signedAt, SIGNATURE_DATE).toInstant(ZoneOffset.UTC).toEpochMilli()
+                + SECONDS.toMillis(Long.parseLong(expiresInSeconds));
+    }
+
+    private static Map<String, String> parseQuery(final String query) {
+        final Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(parameter.substring(0, equals), decode(parameter.substring(equals + 1)));
+            }
+        }
+        return parameters;
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
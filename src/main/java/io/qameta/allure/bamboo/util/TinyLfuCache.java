@@ -0,0 +1,319 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache of file contents bounded by their total size, with W-TinyLFU admission.
+ * New entries get into a small LRU window first. An entry leaving the window is admitted to the main space
+ * only if it has been requested more often than the entry it would evict, so a one-off scan of many files
+ * does not flush the frequently requested ones. The main space is split into the probation and the protected
+ * segments, an entry requested again while on probation becomes protected. Contents can be kept off heap.
+ */
+public final class TinyLfuCache {
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long windowBytes;
+    private final long mainBytes;
+    private final long protectedBytes;
+    private final boolean offHeap;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<String, ByteBuffer> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, ByteBuffer> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowSize;
+    private long probationSize;
+    private long protectedSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * @param maxBytes         total size of the contents to keep
+     * @param expectedFileSize typical size of a file, used to size the frequency sketch
+     * @param offHeap          whether to keep the contents in direct buffers
+     */
+    public TinyLfuCache(final long maxBytes,
+                        final int expectedFileSize,
+                        final boolean offHeap) {
+        this.windowBytes = Math.max(1, maxBytes * WINDOW_PERCENT / 100);
+        this.mainBytes = maxBytes - windowBytes;
+        this.protectedBytes = mainBytes * PROTECTED_PERCENT / 100;
+        this.offHeap = offHeap;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(1024, maxBytes / expectedFileSize)));
+    }
+
+    /**
+     * Returns the content of the file and records the request of it.
+     *
+     * @param key key of the file
+     * @return read-only view of the content or null if it is not cached
+     */
+    @Nullable
+    public synchronized ByteBuffer get(final @NotNull String key) {
+        sketch.increment(key);
+        ByteBuffer value = window.get(key);
+        if (value == null) {
+            value = protectedSegment.get(key);
+        }
+        if (value == null) {
+            value = probation.remove(key);
+            if (value != null) {
+                probationSize -= value.capacity();
+                protect(key, value);
+            }
+        }
+        if (value == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return value.asReadOnlyBuffer();
+    }
+
+    /**
+     * Offers the content of the file to the cache, it is kept unless it loses the admission.
+     *
+     * @param key     key of the file
+     * @param content content of the file
+     */
+    public synchronized void put(final @NotNull String key,
+                                 final @NotNull byte[] content) {
+        if (content.length > mainBytes) {
+            return;
+        }
+        remove(key);
+        final ByteBuffer value = offHeap
+                ? ByteBuffer.allocateDirect(content.length)
+                : ByteBuffer.allocate(content.length);
+        value.put(content);
+        value.flip();
+        window.put(key, value);
+        windowSize += value.capacity();
+        final Iterator<Map.Entry<String, ByteBuffer>> iterator = window.entrySet().iterator();
+        while (windowSize > windowBytes && iterator.hasNext()) {
+            final Map.Entry<String, ByteBuffer> candidate = iterator.next();
+            iterator.remove();
+            windowSize -= candidate.getValue().capacity();
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Removes the files matching the predicate, e.g. all the files of a rebuilt report.
+     *
+     * @param keys predicate of the keys to remove
+     */
+    public synchronized void invalidateIf(final @NotNull Predicate<String> keys) {
+        windowSize -= removeIf(window, keys);
+        probationSize -= removeIf(probation, keys);
+        protectedSize -= removeIf(protectedSegment, keys);
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, rejections, window.size() + probation.size()
+                + protectedSegment.size(), windowSize + probationSize + protectedSize);
+    }
+
+    private void admit(final String key,
+                       final ByteBuffer candidate) {
+        final int frequency = sketch.frequency(key);
+        while (probationSize + protectedSize + candidate.capacity() > mainBytes) {
+            final LinkedHashMap<String, ByteBuffer> segment = probation.isEmpty() ? protectedSegment : probation;
+            final Map.Entry<String, ByteBuffer> victim = segment.entrySet().iterator().next();
+            if (frequency <= sketch.frequency(victim.getKey())) {
+                rejections++;
+                return;
+            }
+            segment.remove(victim.getKey());
+            if (segment == probation) {
+                probationSize -= victim.getValue().capacity();
+            } else {
+                protectedSize -= victim.getValue().capacity();
+            }
+            evictions++;
+        }
+        probation.put(key, candidate);
+        probationSize += candidate.capacity();
+    }
+
+    private void protect(final String key,
+                         final ByteBuffer value) {
+        protectedSegment.put(key, value);
+        protectedSize += value.capacity();
+        final Iterator<Map.Entry<String, ByteBuffer>> iterator = protectedSegment.entrySet().iterator();
+        while (protectedSize > protectedBytes && iterator.hasNext()) {
+            final Map.Entry<String, ByteBuffer> demoted = iterator.next();
+            iterator.remove();
+            protectedSize -= demoted.getValue().capacity();
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationSize += demoted.getValue().capacity();
+        }
+    }
+
+    private void remove(final String key) {
+        windowSize -= size(window.remove(key));
+        probationSize -= size(probation.remove(key));
+        protectedSize -= size(protectedSegment.remove(key));
+    }
+
+    private static long size(final @Nullable ByteBuffer value) {
+        return value == null ? 0 : value.capacity();
+    }
+
+    private static long removeIf(final Map<String, ByteBuffer> segment,
+                                 final Predicate<String> keys) {
+        long removed = 0;
+        final Iterator<Map.Entry<String, ByteBuffer>> iterator = segment.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, ByteBuffer> entry = iterator.next();
+            if (keys.test(entry.getKey())) {
+                removed += entry.getValue().capacity();
+                iterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters of how often the keys are requested. The counters are halved
+     * once the number of requests reaches ten times the width, so the old popularity fades out.
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(final int expectedEntries) {
+            final int width = Integer.highestOneBit(Math.max(2, expectedEntries - 1)) << 1;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        private int frequency(final String key) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[i][index(key, i)]);
+            }
+            return frequency;
+        }
+
+        private void increment(final String key) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                final int index = index(key, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (byte[] row : table) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] = (byte) (row[j] >> 1);
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        private int index(final String key,
+                          final int row) {
+            int hash = key.hashCode() * SEEDS[row];
+            hash ^= hash >>> 16;
+            return hash & mask;
+        }
+    }
+
+    /**
+     * Snapshot of the statistics of the cache.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long rejections;
+        private final int entries;
+        private final long bytes;
+
+        private Stats(final long hits,
+                      final long misses,
+                      final long evictions,
+                      final long rejections,
+                      final int entries,
+                      final long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getRejections() {
+            return rejections;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, hitRate=%.2f, evictions=%d, rejections=%d, entries=%d, bytes=%d",
+                    hits, misses, getHitRate(), evictions, rejections, entries, bytes);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 import org.apache.commons.compress.utils.IOUtils;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,12 +32,26 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static java.nio.file.Files.createTempDirectory;
 import static java.nio.file.Files.move;
 
 public final class ZipUtil {
 
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "png", "jpg", "jpeg", "gif", "webp", "mp4", "webm", "zip", "gz", "woff", "woff2"));
+    private static final String TMP_DIR_PREFIX = "tmp_allure_report";
     private static final String DIRECTORY_CREATE_ERROR = "The directory: %s couldn't be created successfully";
 
     private ZipUtil() {
@@ -73,13 +88,64 @@ public final class ZipUtil {
         }
     }
 
+    /**
+     * Packs the folder into a single archive. Files which are already compressed are stored as is,
+     * the central directory of the archive serves as an index of its entries.
+     *
+     * @param srcFolder folder to pack
+     * @param target    archive to create
+     * @param excluded  names of the files to skip
+     * @throws IOException if the folder cannot be packed
+     */
+    public static void packFolder(final @NotNull Path srcFolder,
+                                  final @NotNull Path target,
+                                  final String... excluded) throws IOException {
+        final Set<String> excludedNames = new HashSet<>(Arrays.asList(excluded));
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(srcFolder)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !excludedNames.contains(file.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            for (Path file : files) {
+                final ZipEntry entry = new ZipEntry(srcFolder.relativize(file).toString().replace('\\', '/'));
+                if (isCompressed(file)) {
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(Files.size(file));
+                    entry.setCrc(crc32(file));
+                }
+                zip.putNextEntry(entry);
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static boolean isCompressed(final Path file) {
+        final String name = file.getFileName().toString().toLowerCase(Locale.ENGLISH);
+        return COMPRESSED_EXTENSIONS.contains(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static long crc32(final Path file) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (InputStream input = new CheckedInputStream(Files.newInputStream(file), crc)) {
+            IOUtils.skip(input, Long.MAX_VALUE);
+        }
+        return crc.getValue();
+    }
+
     public static void zipFolder(final @NotNull Path srcFolder,
                                  final @NotNull Path targetDir) throws IOException {
-        final Path zipReportTmpDir = createTempDirectory("tmp_allure_report");
+        // keep the archive on the same file system as the report to move it cheaply
+        final Path parentDir = srcFolder.toAbsolutePath().getParent();
+        final Path zipReportTmpDir = parentDir != null
+                ? createTempDirectory(parentDir, TMP_DIR_PREFIX) : createTempDirectory(TMP_DIR_PREFIX);
         final Path zipReport = zipReportTmpDir.resolve("report.zip");
         try (ZipFile zp = new ZipFile(zipReport.toFile())) {
             zp.addFolder(srcFolder.toFile());
         }
         move(zipReport, targetDir, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(zipReportTmpDir);
     }
 }
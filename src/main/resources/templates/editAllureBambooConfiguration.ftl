@@ -11,4 +11,10 @@
 
     [@ww.textarea labelKey="custom.allure.logo.url.label" name="custom.allure.logo.url" required="false"/]
 
+    [@ww.textfield labelKey="custom.allure.config.history.max.items.label" name="custom.allure.config.history.max.items" required="false"/]
+
+    [@ww.textfield labelKey="custom.allure.config.history.max.age.label" name="custom.allure.config.history.max.age" required="false"/]
+
+    [@ww.textfield labelKey="custom.allure.config.history.max.trend.label" name="custom.allure.config.history.max.trend" required="false"/]
+
 [/@ui.bambooSection]
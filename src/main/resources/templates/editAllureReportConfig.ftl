@@ -24,9 +24,23 @@ cancelUri='/admin/editAllureReportConfig.action'
 
     [@ww.checkbox labelKey='allure.config.enabled.default.label' name='custom.allure.config.enabled.default' toggle='true' /]
 
+    [@ww.checkbox labelKey='allure.config.redirect.enabled.label' name='custom.allure.config.redirect.enabled' toggle='true' /]
+
     [@ww.textfield labelKey="allure.config.download.url.label" name="custom.allure.config.download.url" required="true"/]
 
     [@ww.textfield labelKey="allure.config.local.storage.label" name="custom.allure.config.local.storage" required="true"/]
+
+    [@ui.bambooSection titleKey="allure.config.retention.title" descriptionKey="allure.config.retention.description"]
+        [@ww.textfield labelKey="allure.config.retention.max.size.label" name="custom.allure.config.retention.max.size" required="false"/]
+
+        [@ww.textfield labelKey="allure.config.retention.max.builds.label" name="custom.allure.config.retention.max.builds" required="false"/]
+
+        [@ww.textfield labelKey="allure.config.retention.max.age.label" name="custom.allure.config.retention.max.age" required="false"/]
+
+        [@ww.textfield labelKey="allure.config.retention.keep.successful.label" name="custom.allure.config.retention.keep.successful" required="false"/]
+
+        [@ww.textfield labelKey="allure.config.storage.pack.after.label" name="custom.allure.config.storage.pack.after" required="false"/]
+    [/@ui.bambooSection]
 [/@ww.form]
 </body>
 </html>
@@ -21,6 +21,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoRule;
 
 import java.io.File;
@@ -37,6 +38,8 @@ public class AllureDownloaderTest {
     public MockitoRule mockitoRule = rule();
     @Mock
     private AllureSettingsManager settingsManager;
+    @Spy
+    private ArtifactHttpClient httpClient = new ArtifactHttpClient();
     private AllureGlobalConfig settings;
 
     @InjectMocks
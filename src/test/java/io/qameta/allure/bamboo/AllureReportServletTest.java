@@ -15,18 +15,173 @@
  */
 package io.qameta.allure.bamboo;
 
+import io.qameta.allure.bamboo.util.TinyLfuCache;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Matcher;
 
+import static io.qameta.allure.bamboo.AllureBuildResult.allureBuildResult;
 import static io.qameta.allure.bamboo.AllureReportServlet.getUrlPattern;
 import static org.junit.Assert.assertTrue;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
 
 public class AllureReportServletTest {
 
+    private static final String FILE_URL = "file:/storage/PROJ-PLAN/1/data/suites.json";
+    private static final long TIMEOUT_MS = 5000;
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+    @Mock
+    private AllureArtifactsManager artifactsManager;
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private AsyncContext asyncContext;
+
+    private ServletConfig config;
+    private AllureReportServlet servlet;
+
+    @Before
+    public void setUp() throws ServletException {
+        final ServletContext context = mock(ServletContext.class);
+        when(context.getMimeType(anyString())).thenReturn("application/json");
+        config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        servlet = new AllureReportServlet(artifactsManager, new ArtifactHttpClient());
+        servlet.init(config);
+        when(request.startAsync()).thenReturn(asyncContext);
+        when(request.getAsyncContext()).thenReturn(asyncContext);
+        when(request.getRequestURI()).thenReturn("/bamboo/plugins/servlet/allure/report/PROJ-PLAN/1/data/suites.json");
+        when(artifactsManager.resolveReport("PROJ-PLAN", "1")).thenReturn(Optional.of(new ReportResolution(
+                allureBuildResult(true, null), true, true, null, null, false, 1_000_000L)));
+        when(artifactsManager.getManifestEntry("PROJ-PLAN", "1", "data/suites.json")).thenReturn(Optional.empty());
+        when(artifactsManager.getArtifactUrl("PROJ-PLAN", "1", "data/suites.json")).thenReturn(Optional.of(FILE_URL));
+        when(artifactsManager.getHotFiles()).thenReturn(new TinyLfuCache(1024 * 1024, 1024, false));
+    }
+
     @Test
     public void itShouldMatchThePattern() throws Exception {
         final Matcher matcher = getUrlPattern().matcher("/plugins/servlet/allure/report/STPCI-STPITCONFLUENCE60/15/");
         assertTrue(matcher.matches());
     }
+
+    @Test
+    public void itShouldDropValidatorsOfFileWhichCannotBeOpened() throws IOException {
+        when(artifactsManager.getLocalArtifactSize(FILE_URL)).thenReturn(100L);
+        when(artifactsManager.openArtifact(FILE_URL)).thenThrow(new FileNotFoundException(FILE_URL));
+
+        servlet.doGet(request, response);
+
+        final InOrder order = inOrder(response);
+        order.verify(response).setHeader(eq("ETag"), anyString());
+        order.verify(response).reset();
+        order.verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    public void itShouldNotResetCommittedResponse() throws IOException {
+        when(artifactsManager.getLocalArtifactSize(FILE_URL)).thenReturn(100L);
+        when(artifactsManager.openArtifact(FILE_URL)).thenThrow(new IOException("Storage is not available"));
+        when(response.isCommitted()).thenReturn(true);
+
+        servlet.doGet(request, response);
+
+        verify(response, never()).reset();
+        verify(response, never()).sendError(HttpServletResponse.SC_BAD_GATEWAY);
+    }
+
+    @Test
+    public void itShouldCompleteAsyncRequestOnceBodyIsWritten() throws Exception {
+        final byte[] content = new byte[2 * 1024 * 1024];
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.isAsyncStarted()).thenReturn(true);
+        when(artifactsManager.getLocalArtifactSize(FILE_URL)).thenReturn((long) content.length);
+        when(artifactsManager.openArtifact(FILE_URL, 0L)).thenReturn(new ByteArrayInputStream(content));
+        final ServletOutputStream output = mock(ServletOutputStream.class);
+        when(output.isReady()).thenReturn(true);
+        when(response.getOutputStream()).thenReturn(output);
+        final AllureReportServlet asyncServlet = newAsyncServlet(newExecutor(), newExecutor());
+
+        asyncServlet.doGet(request, response);
+
+        final ArgumentCaptor<WriteListener> listener = ArgumentCaptor.forClass(WriteListener.class);
+        verify(output, timeout(TIMEOUT_MS)).setWriteListener(listener.capture());
+        verify(asyncContext, never()).complete();
+        listener.getValue().onWritePossible();
+        verify(asyncContext, timeout(TIMEOUT_MS)).complete();
+        verify(output, timeout(TIMEOUT_MS).times(64)).write(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void itShouldFailAsyncRequestWithUnexpectedError() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(artifactsManager.resolveReport("PROJ-PLAN", "1")).thenThrow(new IllegalStateException("Unexpected"));
+        final AllureReportServlet asyncServlet = newAsyncServlet(newExecutor(), newExecutor());
+
+        asyncServlet.doGet(request, response);
+
+        verify(asyncContext, timeout(TIMEOUT_MS)).complete();
+        verify(response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    public void itShouldRejectRequestWhenExecutorIsFull() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+        final ThreadPoolExecutor executor = newExecutor();
+        executor.shutdown();
+        final AllureReportServlet asyncServlet = newAsyncServlet(executor, newExecutor());
+
+        asyncServlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        verify(response).setHeader("Retry-After", "1");
+        verify(asyncContext).complete();
+    }
+
+    private AllureReportServlet newAsyncServlet(final ThreadPoolExecutor executor,
+                                                final ThreadPoolExecutor writeExecutor) throws ServletException {
+        final AllureReportServlet asyncServlet = new AllureReportServlet(
+                artifactsManager, new ArtifactHttpClient(), executor, writeExecutor
+        );
+        asyncServlet.init(config);
+        return asyncServlet;
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+        return new ThreadPoolExecutor(1, 1, 1, MINUTES, new ArrayBlockingQueue<>(1));
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+public class AllureStaticServletTest {
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+    @Mock
+    private AllureArtifactsManager artifactsManager;
+    @Mock
+    private StaticAssetStore assetStore;
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+
+    private AllureStaticServlet servlet;
+
+    @Before
+    public void setUp() {
+        servlet = new AllureStaticServlet(artifactsManager);
+        when(artifactsManager.getStaticAssetStore()).thenReturn(assetStore);
+        when(assetStore.getAsset(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+        when(request.getContextPath()).thenReturn("/bamboo");
+        when(request.getRequestURI()).thenReturn("/bamboo/plugins/servlet/allure/static/2.13.0/abcdef/app.js");
+    }
+
+    @Test
+    public void itShouldRedirectCleanedUpAssetToReportCopy() throws Exception {
+        when(request.getHeader("Referer"))
+                .thenReturn("https://bamboo.local/bamboo/plugins/servlet/allure/report/PROJ-PLAN/15/index.html?a=b");
+
+        servlet.doGet(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+        verify(response).setHeader("Location", "/bamboo/plugins/servlet/allure/report/PROJ-PLAN/15/app.js");
+    }
+
+    @Test
+    public void itShouldRedirectToReportOfThisServerOnly() throws Exception {
+        when(request.getHeader("Referer"))
+                .thenReturn("https://evil.example/plugins/servlet/allure/report/PROJ-PLAN/15/data/page.html");
+
+        servlet.doGet(request, response);
+
+        verify(response).setHeader("Location", "/bamboo/plugins/servlet/allure/report/PROJ-PLAN/15/data/app.js");
+    }
+
+    @Test
+    public void itShouldNotRedirectWithoutReportReferer() throws Exception {
+        when(request.getHeader("Referer")).thenReturn("https://evil.example/index.html");
+
+        servlet.doGet(request, response);
+
+        verify(response, never()).setHeader(anyString(), anyString());
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+}
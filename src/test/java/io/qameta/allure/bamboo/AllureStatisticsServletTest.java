@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.atlassian.bamboo.plan.PlanKey;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
+import com.atlassian.bamboo.security.BambooPermissionManager;
+import com.atlassian.bamboo.security.acegi.acls.BambooPermission;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.qameta.allure.bamboo.AllureStatisticsServlet.BuildRange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoRule;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.junit.MockitoJUnit.rule;
+
+public class AllureStatisticsServletTest {
+
+    private static final AllureBuildStatistics STATISTICS = new AllureBuildStatistics(3, 1, 0, 0, 0, 4, 1000);
+
+    @Rule
+    public MockitoRule mockitoRule = rule();
+    @Mock
+    private AllureArtifactsManager artifactsManager;
+    @Mock
+    private ResultsSummaryManager resultsSummaryManager;
+    @Mock
+    private BambooPermissionManager permissionManager;
+
+    private AllureStatisticsServlet servlet;
+
+    @Before
+    public void setUp() {
+        when(artifactsManager.getBuildStatistics(anyString(), anyInt())).thenReturn(Optional.of(STATISTICS));
+        when(permissionManager.hasPlanPermission(eq(BambooPermission.READ), any(PlanKey.class))).thenReturn(true);
+        servlet = new AllureStatisticsServlet(artifactsManager, resultsSummaryManager, permissionManager);
+    }
+
+    @Test
+    public void itShouldParseBuildRanges() {
+        assertRange(BuildRange.parse("PROJ-PLAN"), "PROJ-PLAN", 0, 0);
+        assertRange(BuildRange.parse("PROJ-PLAN:42"), "PROJ-PLAN", 42, 42);
+        assertRange(BuildRange.parse("PROJ-PLAN-JOB1:10-42"), "PROJ-PLAN-JOB1", 10, 42);
+        assertThat(BuildRange.parse("PROJ-PLAN:10-42").size(), equalTo(33L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void itShouldRejectReversedRanges() {
+        BuildRange.parse("PROJ-PLAN:42-10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void itShouldRejectMalformedPlans() {
+        BuildRange.parse("PROJ PLAN:1");
+    }
+
+    @Test
+    public void itShouldPageNewestBuildsFirst() throws IOException {
+        final JsonNode first = writePage(0, 3);
+        final JsonNode last = writePage(3, 3);
+
+        assertThat(first.get("total").asLong(), equalTo(5L));
+        assertThat(getBuildNumbers(first), equalTo(Arrays.asList(5, 4, 3)));
+        assertThat(first.get("nextOffset").asInt(), equalTo(3));
+        assertThat(getBuildNumbers(last), equalTo(Arrays.asList(2, 1)));
+        assertThat(last.has("nextOffset"), equalTo(false));
+    }
+
+    @Test
+    public void itShouldLeaveOutBuildsWithoutStatistics() throws IOException {
+        final byte[] page = AllureStatisticsServlet.writePage(Collections.singletonList(BuildRange.parse("P-A:1-4")),
+                4, 0, 10, (planKey, buildNumber) -> buildNumber % 2 == 0 ? Optional.of(STATISTICS) : Optional.empty());
+
+        assertThat(getBuildNumbers(new ObjectMapper().readTree(page)), equalTo(Arrays.asList(4, 2)));
+    }
+
+    @Test
+    public void itShouldAnswerNotModifiedToCurrentETag() throws IOException {
+        final HttpServletResponse first = mock(HttpServletResponse.class);
+        when(first.getOutputStream()).thenReturn(new BufferOutputStream());
+        servlet.doGet(request(null), first);
+        final ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(first).setHeader(eq("ETag"), etag.capture());
+
+        final HttpServletResponse second = mock(HttpServletResponse.class);
+        servlet.doGet(request(etag.getValue()), second);
+
+        verify(second).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(second, never()).getOutputStream();
+    }
+
+    @Test
+    public void itShouldLookUpLastBuildOfPlanOnce() throws IOException {
+        final ResultsSummary latest = mock(ResultsSummary.class);
+        when(latest.getBuildNumber()).thenReturn(7);
+        when(resultsSummaryManager.findLastBuildResultBefore("PROJ-PLAN", Integer.MAX_VALUE)).thenReturn(latest);
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameterValues("plan")).thenReturn(new String[]{"PROJ-PLAN"});
+
+        servlet.doGet(request, mock(HttpServletResponse.class, RETURNS_MOCKS));
+        servlet.doGet(request, mock(HttpServletResponse.class, RETURNS_MOCKS));
+
+        verify(resultsSummaryManager, times(1)).findLastBuildResultBefore("PROJ-PLAN", Integer.MAX_VALUE);
+        verify(artifactsManager).getBuildStatistics("PROJ-PLAN", 7);
+    }
+
+    @Test
+    public void itShouldRejectPlansUserIsNotAllowedToView() throws IOException {
+        when(permissionManager.hasPlanPermission(eq(BambooPermission.READ), any(PlanKey.class))).thenReturn(false);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+
+        servlet.doGet(request(null), response);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
+        verify(artifactsManager, never()).getBuildStatistics(anyString(), anyInt());
+    }
+
+    private static JsonNode writePage(final int offset,
+                                      final int limit) throws IOException {
+        final byte[] page = AllureStatisticsServlet.writePage(Collections.singletonList(BuildRange.parse("P-A:1-5")),
+                5, offset, limit, (planKey, buildNumber) -> Optional.of(STATISTICS));
+        return new ObjectMapper().readTree(page);
+    }
+
+    private static List<Integer> getBuildNumbers(final JsonNode page) {
+        final List<Integer> buildNumbers = new ArrayList<>();
+        page.get("builds").forEach(build -> buildNumbers.add(build.get("buildNumber").asInt()));
+        return buildNumbers;
+    }
+
+    private static HttpServletRequest request(final String ifNoneMatch) {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameterValues("plan")).thenReturn(new String[]{"PROJ-PLAN:1-2"});
+        when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+        return request;
+    }
+
+    private static void assertRange(final BuildRange range,
+                                    final String planKey,
+                                    final int from,
+                                    final int to) {
+        assertThat(range.getPlanKey(), equalTo(planKey));
+        assertThat(range.getFrom(), equalTo(from));
+        assertThat(range.getTo(), equalTo(to));
+    }
+
+    private static final class BufferOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+            // writes never block
+        }
+
+        @Override
+        public void write(final int b) {
+            buffer.write(b);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import io.qameta.allure.bamboo.LocalReportStorage.StoredReport;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static io.qameta.allure.bamboo.AllureStorageSweeper.selectEvicted;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+public class AllureStorageSweeperTest {
+
+    private static final long NOW = DAYS.toMillis(100);
+    private static final long MB = 1024L * 1024L;
+
+    @Test
+    public void itShouldEvictReportsOlderThanMaxAge() {
+        final StoredReport old = report("PROJ-A", 1, 10, 0);
+        final StoredReport recent = report("PROJ-A", 2, 1, 0);
+
+        assertThat(evict(config("0", "0", "5"), Arrays.asList(old, recent), Collections.emptySet()),
+                containsInAnyOrder(old));
+    }
+
+    @Test
+    public void itShouldKeepMaxBuildsPerPlan() {
+        final StoredReport first = report("PROJ-A", 1, 3, 0);
+        final StoredReport second = report("PROJ-A", 2, 2, 0);
+        final StoredReport third = report("PROJ-A", 3, 1, 0);
+        final StoredReport other = report("PROJ-B", 1, 3, 0);
+
+        assertThat(evict(config("0", "2", "0"), Arrays.asList(first, second, third, other), Collections.emptySet()),
+                containsInAnyOrder(first));
+    }
+
+    @Test
+    public void itShouldNeverEvictPinnedReports() {
+        final StoredReport pinned = report("PROJ-A", 1, 10, 0);
+        final StoredReport latest = report("PROJ-A", 2, 10, 0);
+
+        assertThat(evict(config("0", "1", "5"), Arrays.asList(pinned, latest), Collections.singleton(pinned)),
+                containsInAnyOrder(latest));
+    }
+
+    @Test
+    public void itShouldEvictLeastRecentlyViewedReportsOverQuota() {
+        final StoredReport viewedLongAgo = report("PROJ-A", 1, 1, 5);
+        final StoredReport viewedRecently = report("PROJ-A", 2, 1, 1);
+        final StoredReport pinned = report("PROJ-B", 1, 1, 10);
+
+        assertThat(evict(config("2", "0", "0"), Arrays.asList(viewedLongAgo, viewedRecently, pinned),
+                Collections.singleton(pinned)), containsInAnyOrder(viewedLongAgo));
+    }
+
+    @Test
+    public void itShouldEvictNothingWithinLimits() {
+        final StoredReport report = report("PROJ-A", 1, 1, 1);
+
+        assertThat(evict(config("10", "5", "5"), Collections.singletonList(report), Collections.emptySet()),
+                empty());
+    }
+
+    private static Set<StoredReport> evict(final AllureStorageConfig config,
+                                           final List<StoredReport> reports,
+                                           final Set<StoredReport> pinned) {
+        return selectEvicted(config, reports, pinned, NOW);
+    }
+
+    private static AllureStorageConfig config(final String maxSizeMb,
+                                              final String maxBuilds,
+                                              final String maxAgeDays) {
+        return new AllureStorageConfig(maxSizeMb, maxBuilds, maxAgeDays, "1", "0");
+    }
+
+    private static StoredReport report(final String planKey,
+                                       final int buildNumber,
+                                       final int publishedDaysAgo,
+                                       final int viewedDaysAgo) {
+        return new StoredReport(planKey, buildNumber, NOW - DAYS.toMillis(publishedDaysAgo),
+                NOW - DAYS.toMillis(viewedDaysAgo), MB, false);
+    }
+}
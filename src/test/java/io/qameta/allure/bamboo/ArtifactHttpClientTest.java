@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.sun.net.httpserver.HttpServer;
+import io.qameta.allure.bamboo.ArtifactHttpClient.Response;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ArtifactHttpClientTest {
+
+    private static final byte[] CONTENT = "{\"suites\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private final CountDownLatch headersReleased = new CountDownLatch(1);
+    private final CountDownLatch bodyReleased = new CountDownLatch(1);
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/slow-headers", exchange -> {
+            await(headersReleased);
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(CONTENT);
+            }
+        });
+        server.createContext("/slow-body", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.flush();
+                await(bodyReleased);
+                output.write(CONTENT);
+            }
+        });
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(CONTENT);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        headersReleased.countDown();
+        bodyReleased.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void itShouldLimitRequestsWaitingForResponseOfHost() throws Exception {
+        final ArtifactHttpClient client = new ArtifactHttpClient(1, 200);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> waiting = executor.submit(() -> {
+                try (Response response = client.execute(baseUrl + "/slow-headers", "GET", Collections.emptyMap())) {
+                    return response.getStatus();
+                }
+            });
+            Thread.sleep(100);
+
+            final IOException rejected = execute(client, "/data/suites.json");
+            assertThat(rejected.getMessage(), containsString("Too many concurrent requests"));
+
+            headersReleased.countDown();
+            assertThat(waiting.get(5, SECONDS), equalTo(200));
+        } finally {
+            executor.shutdownNow();
+        }
+        try (Response response = client.execute(baseUrl + "/data/suites.json", "GET", Collections.emptyMap())) {
+            assertThat(response.getStatus(), equalTo(200));
+        }
+    }
+
+    @Test
+    public void itShouldReleaseHostOnceHeadersArrive() throws Exception {
+        final ArtifactHttpClient client = new ArtifactHttpClient(1, 200);
+        try (Response slow = client.execute(baseUrl + "/slow-body", "GET", Collections.emptyMap())) {
+            assertThat(slow.getStatus(), equalTo(200));
+            try (Response response = client.execute(baseUrl + "/data/suites.json", "GET", Collections.emptyMap())) {
+                assertThat(response.getStatus(), equalTo(200));
+                assertThat(client.getMetrics().get("active"), equalTo(2L));
+            }
+            bodyReleased.countDown();
+            try (InputStream body = slow.getBody()) {
+                assertThat(IOUtils.toByteArray(body), equalTo(CONTENT));
+            }
+        }
+        assertThat(client.getMetrics().get("active"), equalTo(0L));
+    }
+
+    @Test
+    public void itShouldCountRequestsFailuresAndBytes() throws Exception {
+        final ArtifactHttpClient client = new ArtifactHttpClient(1, 200);
+        try (InputStream body = client.openStream(baseUrl + "/data/suites.json")) {
+            assertThat(IOUtils.toByteArray(body), equalTo(CONTENT));
+        }
+        server.stop(0);
+        execute(client, "/data/suites.json");
+
+        assertThat(client.getMetrics().get("requests"), equalTo(2L));
+        assertThat(client.getMetrics().get("failures"), equalTo(1L));
+        assertThat(client.getMetrics().get("active"), equalTo(0L));
+        assertThat(client.getMetrics().get("bytesReceived"), equalTo((long) CONTENT.length));
+    }
+
+    private IOException execute(final ArtifactHttpClient client,
+                                final String path) {
+        try (Response ignored = client.execute(baseUrl + path, "GET", Collections.emptyMap())) {
+            throw new AssertionError("Request to " + path + " should fail");
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
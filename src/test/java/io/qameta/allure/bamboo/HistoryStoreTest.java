@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HistoryStoreTest {
+
+    private static final String PLAN = "PROJ-PLAN";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HistoryStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        store = new HistoryStore(folder.newFolder("storage").getAbsolutePath());
+    }
+
+    @Test
+    public void itShouldReturnLatestVersionBeforeTheBuild() throws IOException {
+        save(1);
+        save(3);
+
+        assertThat(store.getLatestVersion(PLAN, 3).map(this::read), equalTo(Optional.of("1")));
+        assertThat(store.getLatestVersion(PLAN, 5).map(this::read), equalTo(Optional.of("3")));
+        assertThat(store.getLatestVersion(PLAN, 1).isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void itShouldPruneOldVersions() throws IOException {
+        for (int build = 1; build <= 5; build++) {
+            save(build);
+        }
+
+        assertThat(store.getLatestVersion(PLAN, 3).isPresent(), equalTo(false));
+        assertThat(store.getLatestVersion(PLAN, 4).map(this::read), equalTo(Optional.of("3")));
+    }
+
+    @Test
+    public void itShouldReplaceVersionOfRerunBuild() throws IOException {
+        save(1);
+        final Path rerun = folder.newFolder("rerun").toPath();
+        Files.write(rerun.resolve("history.json"), "rerun".getBytes(StandardCharsets.UTF_8));
+
+        store.save(PLAN, 1, rerun);
+
+        assertThat(store.getLatestVersion(PLAN, 2).map(this::read), equalTo(Optional.of("rerun")));
+        try (Stream<Path> dirs = Files.list(store.getLatestVersion(PLAN, 2).get().getParent())) {
+            assertThat(dirs.count(), equalTo(1L));
+        }
+    }
+
+    private void save(final int buildNumber) throws IOException {
+        final Path history = folder.newFolder("history-" + buildNumber).toPath();
+        Files.write(history.resolve("history.json"), String.valueOf(buildNumber).getBytes(StandardCharsets.UTF_8));
+        store.save(PLAN, buildNumber, history);
+    }
+
+    private String read(final Path version) {
+        try {
+            return new String(Files.readAllBytes(version.resolve("history.json")), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
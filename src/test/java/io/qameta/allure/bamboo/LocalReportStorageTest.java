@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import io.qameta.allure.bamboo.LocalReportStorage.StoredReport;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.fail;
+
+public class LocalReportStorageTest {
+
+    private static final String PLAN = "PROJ-PLAN";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalReportStorage storage;
+
+    @Before
+    public void setUp() throws IOException {
+        storage = new LocalReportStorage(folder.newFolder("storage").getAbsolutePath());
+    }
+
+    @Test
+    public void itShouldEvictListedReport() throws IOException {
+        publish("1");
+        final StoredReport report = listSingleReport();
+
+        assertThat(storage.evict(PLAN, "1", report.getPublishedAt()), equalTo(true));
+
+        assertThat(storage.isEvicted(PLAN, "1"), equalTo(true));
+        assertThat(Files.exists(storage.getReportDir(PLAN, "1")), equalTo(false));
+        assertThat(storage.listReports(), hasSize(0));
+    }
+
+    @Test
+    public void itShouldKeepReportRepublishedAfterListing() throws IOException {
+        publish("1");
+        final StoredReport report = listSingleReport();
+        Files.setLastModifiedTime(storage.getReportDir(PLAN, "1"),
+                FileTime.fromMillis(report.getPublishedAt() + 1000));
+
+        assertThat(storage.evict(PLAN, "1", report.getPublishedAt()), equalTo(false));
+
+        assertThat(storage.isEvicted(PLAN, "1"), equalTo(false));
+        assertThat(Files.isRegularFile(storage.getReportDir(PLAN, "1").resolve("index.html")), equalTo(true));
+    }
+
+    @Test
+    public void itShouldClearEvictedMarkWhenRepublished() throws IOException {
+        publish("1");
+        storage.evict(PLAN, "1", listSingleReport().getPublishedAt());
+
+        publish("1");
+
+        assertThat(storage.isEvicted(PLAN, "1"), equalTo(false));
+        assertThat(listSingleReport().isPacked(), equalTo(false));
+    }
+
+    @Test
+    public void itShouldPackReportKeepingItsPublishTime() throws IOException {
+        publish("1");
+        final StoredReport report = listSingleReport();
+
+        assertThat(storage.pack(PLAN, "1", report.getPublishedAt()), equalTo(true));
+
+        final StoredReport packed = listSingleReport();
+        assertThat(packed.isPacked(), equalTo(true));
+        assertThat(packed.getPublishedAt(), equalTo(report.getPublishedAt()));
+        assertThat(storage.pack(PLAN, "1", report.getPublishedAt()), equalTo(false));
+        assertThat(storage.evict(PLAN, "1", packed.getPublishedAt()), equalTo(true));
+        assertThat(Files.exists(storage.getReportPack(PLAN, "1")), equalTo(false));
+    }
+
+    @Test
+    public void itShouldRestorePreviousReportWhenPublishFails() throws IOException {
+        publish("1");
+        final File missing = new File(folder.getRoot(), "missing");
+
+        try {
+            storage.publish(missing, PLAN, "1");
+            fail("Publishing a missing report must fail");
+        } catch (IOException e) {
+            assertThat(Files.isRegularFile(storage.getReportDir(PLAN, "1").resolve("index.html")), equalTo(true));
+        }
+    }
+
+    private void publish(final String buildNumber) throws IOException {
+        final File report = folder.newFolder();
+        Files.write(report.toPath().resolve("index.html"), "<html/>".getBytes(StandardCharsets.UTF_8));
+        storage.publish(report, PLAN, buildNumber);
+    }
+
+    private StoredReport listSingleReport() throws IOException {
+        final List<StoredReport> reports = storage.listReports();
+        assertThat(reports, hasSize(1));
+        return reports.get(0);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ReportFileCoalescerTest {
+
+    private static final byte[] CONTENT = "{\"suites\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private HttpServer server;
+    private ReportFile file;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            fetches.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(CONTENT);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        file = new ReportFile("http://localhost:" + server.getAddress().getPort() + "/data/suites.json",
+                "PLAN-KEY/1/data/suites.json", null);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void itShouldShareFetchBetweenConcurrentRequests() throws Exception {
+        final ReportFileCoalescer coalescer = new ReportFileCoalescer(new ArtifactHttpClient());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final Callable<byte[]> fetch = () -> coalescer.fetch(file);
+                results.add(executor.submit(fetch));
+            }
+            for (Future<byte[]> result : results) {
+                assertThat(new String(result.get(), StandardCharsets.UTF_8), equalTo("{\"suites\":[]}"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(fetches.get(), equalTo(1));
+    }
+
+    @Test
+    public void itShouldRetainFetchedContentBriefly() throws IOException {
+        final ReportFileCoalescer coalescer = new ReportFileCoalescer(new ArtifactHttpClient());
+
+        coalescer.fetch(file);
+        coalescer.fetch(file);
+
+        assertThat(fetches.get(), equalTo(1));
+    }
+
+    @Test
+    public void itShouldFetchInvalidatedFileAgain() throws IOException {
+        final ReportFileCoalescer coalescer = new ReportFileCoalescer(new ArtifactHttpClient());
+
+        coalescer.fetch(file);
+        coalescer.invalidateIf(key -> key.startsWith("PLAN-KEY/1/"));
+        coalescer.fetch(file);
+
+        assertThat(fetches.get(), equalTo(2));
+    }
+
+    @Test
+    public void itShouldNotRetainFetchInvalidatedWhileInFlight() throws Exception {
+        final ReportFileCoalescer coalescer = new ReportFileCoalescer(new ArtifactHttpClient());
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<byte[]> first = executor.submit(() -> coalescer.fetch(file));
+            Thread.sleep(100);
+            coalescer.invalidateIf(key -> key.startsWith("PLAN-KEY/1/"));
+            first.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        coalescer.fetch(file);
+
+        assertThat(fetches.get(), equalTo(2));
+    }
+}
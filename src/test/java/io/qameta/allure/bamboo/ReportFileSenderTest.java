@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import com.sun.net.httpserver.HttpServer;
+import io.qameta.allure.bamboo.util.ReportManifest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReportFileSenderTest {
+
+    private static final String KEY = "PROJ-PLAN/1/0/data/file.bin";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final byte[] CONTENT = new byte[100];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) i;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private HttpServer server;
+    private ReportFileSender sender;
+
+    @Before
+    public void setUp() throws IOException {
+        final ArtifactHttpClient httpClient = new ArtifactHttpClient();
+        final AllureArtifactsManager artifactsManager = new AllureArtifactsManager(
+                null, null, null, null, null, null, null, httpClient
+        );
+        sender = new ReportFileSender(artifactsManager, httpClient, Runnable::run);
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(final int b) {
+                body.write(b);
+            }
+        });
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/head", exchange -> {
+            exchange.getResponseHeaders().set("Content-Length", "4567");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/signed", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(403, -1);
+                exchange.close();
+                return;
+            }
+            assertThat(exchange.getRequestHeaders().getFirst("Range"), equalTo("bytes=0-0"));
+            exchange.getResponseHeaders().set("Content-Range", "bytes 0-0/4567");
+            exchange.sendResponseHeaders(206, 1);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(0);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void itShouldHandOverLocalFileToSendfile() throws IOException {
+        final Path file = writeFile();
+        when(request.getAttribute(SENDFILE_SUPPORT)).thenReturn(Boolean.TRUE);
+        when(request.getHeader("Range")).thenReturn("bytes=10-19");
+
+        final boolean pending = sender.send(request, response, new ReportFile(file.toUri().toString(), KEY, null));
+
+        assertThat(pending, equalTo(false));
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 10-19/100");
+        verify(request).setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+        verify(request).setAttribute("org.apache.tomcat.sendfile.start", 10L);
+        verify(request).setAttribute("org.apache.tomcat.sendfile.end", 20L);
+        assertThat(body.size(), equalTo(0));
+    }
+
+    @Test
+    public void itShouldCopyRangeOfLocalFileWithoutSendfile() throws IOException {
+        final Path file = writeFile();
+        when(request.getHeader("Range")).thenReturn("bytes=10-19");
+
+        sender.send(request, response, new ReportFile(file.toUri().toString(), KEY, null));
+
+        verify(request, never()).setAttribute(anyString(), eq(file.toAbsolutePath().toString()));
+        verify(response).setHeader("Content-Length", "10");
+        assertThat(body.toByteArray(), equalTo(Arrays.copyOfRange(CONTENT, 10, 20)));
+    }
+
+    @Test
+    public void itShouldCopyRangeOfPackEntryFromOffset() throws IOException {
+        final Path pack = folder.getRoot().toPath().resolve("report.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(pack))) {
+            zip.putNextEntry(new ZipEntry("data/file.bin"));
+            zip.write(CONTENT);
+            zip.closeEntry();
+        }
+        when(request.getAttribute(SENDFILE_SUPPORT)).thenReturn(Boolean.TRUE);
+        when(request.getHeader("Range")).thenReturn("bytes=40-49");
+
+        sender.send(request, response, new ReportFile("jar:" + pack.toUri() + "!/data/file.bin", KEY, null));
+
+        verify(response).setHeader("Content-Range", "bytes 40-49/100");
+        verify(request, never()).setAttribute(eq("org.apache.tomcat.sendfile.filename"), anyString());
+        assertThat(body.toByteArray(), equalTo(Arrays.copyOfRange(CONTENT, 40, 50)));
+    }
+
+    @Test
+    public void itShouldTakeHeadSizeFromManifest() throws IOException {
+        sender.head(response, new ReportFile("http://localhost:1/data/file.bin", KEY,
+                new ReportManifest.Entry(1234, "abc", null)));
+
+        verify(response).setHeader("Content-Length", "1234");
+    }
+
+    @Test
+    public void itShouldTakeHeadSizeFromLocalFile() throws IOException {
+        final Path file = writeFile();
+
+        sender.head(response, new ReportFile(file.toUri().toString(), KEY, null));
+
+        verify(response).setHeader("Content-Length", "100");
+    }
+
+    @Test
+    public void itShouldTakeHeadSizeFromUpstream() throws IOException {
+        sender.head(response, new ReportFile(getUrl("/head"), KEY, null));
+
+        verify(response).setHeader("Content-Length", "4567");
+    }
+
+    @Test
+    public void itShouldTakeHeadSizeFromFirstByteWhenUpstreamRejectsHead() throws IOException {
+        sender.head(response, new ReportFile(getUrl("/signed"), KEY, null));
+
+        verify(response).setHeader("Content-Length", "4567");
+    }
+
+    private Path writeFile() throws IOException {
+        final Path file = folder.newFile("file.bin").toPath();
+        Files.write(file, CONTENT);
+        return file;
+    }
+
+    private String getUrl(final String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
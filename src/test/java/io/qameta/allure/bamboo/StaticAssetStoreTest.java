@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class StaticAssetStoreTest {
+
+    private static final Pattern SCRIPT = Pattern.compile("src=\"/static/2\\.29/([0-9a-f]+)/app\\.js\"");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StaticAssetStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        store = new StaticAssetStore(folder.newFolder("storage").getAbsolutePath());
+    }
+
+    @Test
+    public void itShouldPointIndexToSharedAssets() throws IOException {
+        final Path report = report("console.log(1)");
+
+        store.share(report, "2.29", "/static");
+
+        final String html = read(report.resolve("index.html"));
+        assertThat(html, containsString("href=\"/static/2.29/"));
+        final Matcher matcher = SCRIPT.matcher(html);
+        assertThat(matcher.find(), equalTo(true));
+        assertThat(store.getAsset("2.29", matcher.group(1), "app.js").map(this::read),
+                equalTo(Optional.of("console.log(1)")));
+        assertThat(Files.isRegularFile(report.resolve("app.js")), equalTo(true));
+    }
+
+    @Test
+    public void itShouldShareAssetsOfSameContentOnce() throws IOException {
+        final Path first = report("console.log(1)");
+        final Path second = report("console.log(1)");
+        final Path changed = report("console.log(2)");
+
+        store.share(first, "2.29", "/static");
+        store.share(second, "2.29", "/static");
+        store.share(changed, "2.29", "/static");
+
+        assertThat(read(first.resolve("index.html")), equalTo(read(second.resolve("index.html"))));
+        assertThat(read(first.resolve("index.html")).equals(read(changed.resolve("index.html"))), equalTo(false));
+    }
+
+    @Test
+    public void itShouldNotServeUnknownAssets() {
+        assertThat(store.getAsset("..", "0123456789abcdef", "app.js").isPresent(), equalTo(false));
+        assertThat(store.getAsset("2.29", "0123456789abcdef", "index.html").isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void itShouldRemoveAssetsNotSharedForLong() throws IOException {
+        final Path report = report("console.log(1)");
+        store.share(report, "2.29", "/static");
+        final String hash = getScriptHash(report);
+        ageAssets();
+
+        store.cleanUp(DAYS.toMillis(1));
+
+        assertThat(store.getAsset("2.29", hash, "app.js").isPresent(), equalTo(false));
+        assertThat(Files.exists(getStaticDir().resolve("2.29")), equalTo(false));
+    }
+
+    @Test
+    public void itShouldKeepAssetsSharedAgain() throws IOException {
+        final Path first = report("console.log(1)");
+        store.share(first, "2.29", "/static");
+        final String hash = getScriptHash(first);
+        ageAssets();
+
+        store.share(report("console.log(1)"), "2.29", "/static");
+        store.cleanUp(DAYS.toMillis(1));
+
+        assertThat(store.getAsset("2.29", hash, "app.js").isPresent(), equalTo(true));
+    }
+
+    private String getScriptHash(final Path report) {
+        final Matcher matcher = SCRIPT.matcher(read(report.resolve("index.html")));
+        assertThat(matcher.find(), equalTo(true));
+        return matcher.group(1);
+    }
+
+    private void ageAssets() throws IOException {
+        try (Stream<Path> files = Files.walk(getStaticDir())) {
+            for (Path file : files.filter(Files::isRegularFile).collect(toList())) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - DAYS.toMillis(2)));
+            }
+        }
+    }
+
+    private Path getStaticDir() {
+        return folder.getRoot().toPath().resolve("storage").resolve("allure-static");
+    }
+
+    private Path report(final String script) throws IOException {
+        final Path report = folder.newFolder().toPath();
+        Files.write(report.resolve("index.html"), ("<link rel=\"stylesheet\" href=\"styles.css\">"
+                + "<script src=\"app.js\"></script>").getBytes(UTF_8));
+        Files.write(report.resolve("app.js"), script.getBytes(UTF_8));
+        Files.write(report.resolve("styles.css"), "body {}".getBytes(UTF_8));
+        return report;
+    }
+
+    private String read(final Path file) {
+        try {
+            return new String(Files.readAllBytes(file), UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class BlobStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path blobs;
+    private BlobStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        blobs = folder.newFolder("blobs").toPath();
+        store = new BlobStore(blobs);
+        assumeTrue(Files.getFileStore(blobs).supportsFileAttributeView("unix"));
+    }
+
+    @Test
+    public void itShouldLinkIdenticalFilesToTheSameBlob() throws IOException {
+        final Path first = createReport("1", "console.log('allure')");
+        final Path second = createReport("2", "console.log('allure')");
+
+        store.deduplicate(first);
+        store.deduplicate(second);
+
+        assertThat(Files.isSameFile(first.resolve("app.js"), second.resolve("app.js")), equalTo(true));
+        assertThat(countBlobs(), equalTo(1L));
+    }
+
+    @Test
+    public void itShouldKeepBlobWhileItIsReferenced() throws IOException {
+        final Path first = createReport("1", "console.log('allure')");
+        final Path second = createReport("2", "console.log('allure')");
+        store.deduplicate(first);
+        store.deduplicate(second);
+
+        store.delete(first);
+        assertThat(countBlobs(), equalTo(1L));
+        assertThat(new String(Files.readAllBytes(second.resolve("app.js")), StandardCharsets.UTF_8),
+                equalTo("console.log('allure')"));
+
+        store.delete(second);
+        assertThat(countBlobs(), equalTo(0L));
+    }
+
+    @Test
+    public void itShouldReleaseBlobsLinkedBeforeFailure() throws IOException {
+        final Path report = createReport("1", "console.log('allure')");
+        Files.write(report.resolve("vendor.js"), "console.log('vendor')".getBytes(StandardCharsets.UTF_8));
+        final String linked = BlobStore.hash(report.resolve("app.js"));
+        final String failed = BlobStore.hash(report.resolve("vendor.js"));
+        assumeTrue(!linked.startsWith(failed.substring(0, 2)));
+        final Path blocker = Files.createFile(blobs.resolve(failed.substring(0, 2)));
+
+        try {
+            store.deduplicate(report);
+            fail("Deduplication should fail");
+        } catch (IOException e) {
+            assertThat(Files.exists(blobs.resolve(linked.substring(0, 2)).resolve(linked)), equalTo(true));
+        }
+        Files.delete(blocker);
+        store.delete(report);
+
+        assertThat(countBlobs(), equalTo(0L));
+    }
+
+    private Path createReport(final String name,
+                              final String content) throws IOException {
+        final Path dir = folder.newFolder(name).toPath();
+        Files.write(dir.resolve("app.js"), content.getBytes(StandardCharsets.UTF_8));
+        return dir;
+    }
+
+    private long countBlobs() throws IOException {
+        try (Stream<Path> files = Files.walk(blobs)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HistoryCompactorTest {
+
+    private static final String REPORT_URL = "http://bamboo/plugins/servlet/allure/report/PROJ-PLAN/%d/#testresult/%d";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path history;
+
+    @Before
+    public void setUp() throws IOException {
+        history = folder.newFolder("history").toPath();
+    }
+
+    @Test
+    public void itShouldCapItemsAndDropOutdatedTests() throws IOException {
+        write("history.json", "{"
+                + "\"recent\":{\"statistic\":{\"total\":3},"
+                + "\"items\":[" + item(9) + "," + item(8) + "," + item(7) + "]},"
+                + "\"outdated\":{\"statistic\":{\"total\":1},\"items\":[" + item(2) + "]}"
+                + "}");
+
+        new HistoryCompactor(2, 5, 0).compact(history, 10);
+
+        final JsonNode compacted = read("history.json");
+        assertThat(compacted.size(), equalTo(1));
+        assertThat(compacted.path("recent").path("items").size(), equalTo(2));
+    }
+
+    @Test
+    public void itShouldDownsampleTrend() throws IOException {
+        final StringBuilder trend = new StringBuilder("[");
+        for (int build = 100; build > 0; build--) {
+            trend.append("{\"buildOrder\":").append(build).append('}').append(build > 1 ? "," : "]");
+        }
+        write("history-trend.json", trend.toString());
+
+        new HistoryCompactor(0, 0, 10).compact(history, 101);
+
+        final JsonNode compacted = read("history-trend.json");
+        assertThat(compacted.size(), equalTo(10));
+        assertThat(compacted.get(0).path("buildOrder").asInt(), equalTo(100));
+        assertThat(compacted.get(4).path("buildOrder").asInt(), equalTo(96));
+    }
+
+    private static String item(final int build) {
+        return "{\"status\":\"passed\",\"reportUrl\":\"" + String.format(REPORT_URL, build, build) + "\"}";
+    }
+
+    private void write(final String name,
+                       final String content) throws IOException {
+        Files.write(history.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private JsonNode read(final String name) throws IOException {
+        return new JsonMapper().readTree(history.resolve(name).toFile());
+    }
+}
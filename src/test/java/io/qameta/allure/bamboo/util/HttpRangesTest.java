@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import io.qameta.allure.bamboo.util.HttpRanges.Range;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class HttpRangesTest {
+
+    @Test
+    public void itShouldParseRanges() {
+        final List<Range> ranges = HttpRanges.parse("bytes=0-99, 500-, -100", 1000);
+
+        assertThat(ranges.size(), equalTo(3));
+        assertThat(ranges.get(0).toContentRange(1000), equalTo("bytes 0-99/1000"));
+        assertThat(ranges.get(1).toContentRange(1000), equalTo("bytes 500-999/1000"));
+        assertThat(ranges.get(2).toContentRange(1000), equalTo("bytes 900-999/1000"));
+    }
+
+    @Test
+    public void itShouldClampRangeToTheLength() {
+        final List<Range> ranges = HttpRanges.parse("bytes=900-5000", 1000);
+
+        assertThat(ranges.get(0).getLength(), equalTo(100L));
+    }
+
+    @Test
+    public void itShouldReturnEmptyListForUnsatisfiableRanges() {
+        assertThat(HttpRanges.parse("bytes=1000-1100", 1000), empty());
+    }
+
+    @Test
+    public void itShouldIgnoreInvalidHeader() {
+        assertThat(HttpRanges.parse("items=0-1", 1000), nullValue());
+        assertThat(HttpRanges.parse("bytes=5-1", 1000), nullValue());
+        assertThat(HttpRanges.parse("bytes=a-b", 1000), nullValue());
+    }
+}
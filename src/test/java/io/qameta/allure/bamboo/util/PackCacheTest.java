@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PackCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path pack;
+
+    @Before
+    public void setUp() throws IOException {
+        final Path report = folder.newFolder("report").toPath();
+        Files.createDirectories(report.resolve("data"));
+        Files.write(report.resolve("index.html"), "<html/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(report.resolve("data/suites.json"), "{}".getBytes(StandardCharsets.UTF_8));
+        Files.write(report.resolve("favicon.png"), new byte[]{1, 2, 3});
+        pack = folder.getRoot().toPath().resolve("1.pack");
+        ZipUtil.packFolder(report, pack);
+    }
+
+    @Test
+    public void itShouldServeEntriesOfThePack() throws IOException {
+        final PackCache cache = new PackCache(1);
+
+        assertThat(read(cache, "data/suites.json"), equalTo("{}"));
+        assertThat(cache.getEntrySize(pack, "favicon.png"), equalTo(3L));
+    }
+
+    @Test
+    public void itShouldResolveDirectoriesToIndex() throws IOException {
+        final PackCache cache = new PackCache(1);
+
+        assertThat(cache.resolveEntry(pack, ""), equalTo("index.html"));
+        assertThat(cache.resolveEntry(pack, "data/suites.json"), equalTo("data/suites.json"));
+        assertThat(cache.resolveEntry(pack, "data/missing.json"), nullValue());
+    }
+
+    @Test
+    public void itShouldKeepStreamOfEvictedPackReadable() throws IOException {
+        final PackCache cache = new PackCache(1);
+        final Path other = copyPack("2.pack");
+
+        try (InputStream input = cache.openEntry(pack, "data/suites.json")) {
+            assertThat(cache.getEntrySize(other, "favicon.png"), equalTo(3L));
+            assertThat(IOUtils.toString(input, StandardCharsets.UTF_8), equalTo("{}"));
+        }
+        assertThat(cache.getEntrySize(pack, "favicon.png"), equalTo(3L));
+    }
+
+    @Test
+    public void itShouldServeLookupsWhilePacksAreEvicted() throws Exception {
+        final PackCache cache = new PackCache(1);
+        final List<Path> packs = Arrays.asList(pack, copyPack("2.pack"), copyPack("3.pack"));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> lookups = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                final int shift = thread;
+                lookups.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        final Path current = packs.get((i + shift) % packs.size());
+                        assertThat(cache.resolveEntry(current, ""), equalTo("index.html"));
+                        assertThat(cache.getEntrySize(current, "favicon.png"), equalTo(3L));
+                        try (InputStream input = cache.openEntry(current, "data/suites.json")) {
+                            assertThat(IOUtils.toString(input, StandardCharsets.UTF_8), equalTo("{}"));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> lookup : lookups) {
+                lookup.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Path copyPack(final String name) throws IOException {
+        return Files.copy(pack, pack.resolveSibling(name));
+    }
+
+    private String read(final PackCache cache,
+                        final String name) throws IOException {
+        try (InputStream input = cache.openEntry(pack, name)) {
+            return IOUtils.toString(input, StandardCharsets.UTF_8);
+        }
+    }
+}
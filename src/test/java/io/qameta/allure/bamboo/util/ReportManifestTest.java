@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static io.qameta.allure.bamboo.util.ReportManifest.MANIFEST_FILE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReportManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path report;
+
+    @Before
+    public void setUp() throws IOException {
+        report = folder.newFolder("report").toPath();
+        Files.createDirectories(report.resolve("data/attachments"));
+        Files.write(report.resolve("index.html"), "<html/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(report.resolve("data/suites.json"), "{}".getBytes(StandardCharsets.UTF_8));
+        Files.write(report.resolve("data/behaviors.json"), "{}".getBytes(StandardCharsets.UTF_8));
+        Files.write(report.resolve("data/attachments/1.png"), new byte[]{1, 2, 3});
+        ReportManifest.write(report);
+    }
+
+    @Test
+    public void itShouldDescribeFilesOfTheReport() throws IOException {
+        final ReportManifest manifest = read();
+
+        assertThat(manifest.getEntry("data/attachments/1.png").getSize(), equalTo(3L));
+        assertThat(manifest.getEntry("data/suites.json").getHash(),
+                equalTo("44136fa355b3678a1146ad16f7e8649e94fb4fc21fe77e8310c060f61caaff8a"));
+        assertThat(manifest.getEntry(MANIFEST_FILE), nullValue());
+    }
+
+    @Test
+    public void itShouldIgnoreChecksumsOfOlderManifests() throws IOException {
+        final String legacy = "{\"files\":{\"data/suites.json\":{\"size\":2,\"hash\":\"2a5c0a7b\"}}}";
+        final ReportManifest manifest = ReportManifest.read(
+                new ByteArrayInputStream(legacy.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(manifest.getEntry("data/suites.json").getSize(), equalTo(2L));
+        assertThat(manifest.getEntry("data/suites.json").getHash(), nullValue());
+    }
+
+    @Test
+    public void itShouldResolveDirectoriesToIndex() throws IOException {
+        final ReportManifest manifest = read();
+
+        assertThat(manifest.resolve(""), equalTo("index.html"));
+        assertThat(manifest.resolve("/data/suites.json"), equalTo("data/suites.json"));
+        assertThat(manifest.resolve("data/missing.json"), nullValue());
+        assertThat(manifest.resolve("data"), nullValue());
+    }
+
+    @Test
+    public void itShouldCountFilesOfDirectories() throws IOException {
+        final ReportManifest manifest = read();
+
+        assertThat(manifest.getDirectorySize("data/suites.json"), equalTo(2));
+        assertThat(manifest.getDirectorySize("index.html"), equalTo(1));
+        assertThat(manifest.getDirectorySize("widgets/summary.json"), equalTo(0));
+    }
+
+    private ReportManifest read() throws IOException {
+        try (InputStream input = Files.newInputStream(report.resolve(MANIFEST_FILE))) {
+            return ReportManifest.read(input);
+        }
+    }
+}
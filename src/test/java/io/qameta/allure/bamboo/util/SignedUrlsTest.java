@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SignedUrlsTest {
+
+    @Test
+    public void itShouldReadExpiryOfAwsSignatureV4() {
+        final long expiresAt = SignedUrls.getExpiresAt("https://bucket.s3.amazonaws.com/PLAN-1/data/suites.json"
+                + "?X-Amz-Algorithm=AWS4-HMAC-SHA256&X-Amz-Date=20260101T120000Z&X-Amz-Expires=3600"
+                + "&X-Amz-SignedHeaders=host&X-Amz-Signature=abc");
+
+        assertThat(expiresAt, equalTo(Instant.parse("2026-01-01T13:00:00Z").toEpochMilli()));
+    }
+
+    @Test
+    public void itShouldReadExpiryOfAwsSignatureV2() {
+        final long expiresAt = SignedUrls.getExpiresAt("https://bucket.s3.amazonaws.com/PLAN-1/app.js"
+                + "?AWSAccessKeyId=key&Expires=1767268800&Signature=abc%3D");
+
+        assertThat(expiresAt, equalTo(Instant.parse("2026-01-01T12:00:00Z").toEpochMilli()));
+    }
+
+    @Test
+    public void itShouldReadExpiryOfSharedAccessSignature() {
+        final long expiresAt = SignedUrls.getExpiresAt("https://account.blob.core.windows.net/reports/app.js"
+                + "?sv=2022-11-02&se=2026-01-01T12%3A00%3A00Z&sr=b&sp=r&sig=abc");
+
+        assertThat(expiresAt, equalTo(Instant.parse("2026-01-01T12:00:00Z").toEpochMilli()));
+    }
+
+    @Test
+    public void itShouldNotReadExpiryOfUnsignedUrl() {
+        assertThat(SignedUrls.getExpiresAt("https://bamboo.example.com/artifact/PLAN-1/app.js?a=1"), equalTo(-1L));
+        assertThat(SignedUrls.getExpiresAt("https://bucket.s3.amazonaws.com/app.js?Expires=soon"), equalTo(-1L));
+    }
+}
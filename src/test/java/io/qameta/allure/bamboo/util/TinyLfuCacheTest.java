@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2016-2024 Qameta Software Inc
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package io.qameta.allure.bamboo.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TinyLfuCacheTest {
+
+    private static final int FILE_SIZE = 100;
+
+    @Test
+    public void itShouldReturnCachedContent() {
+        final TinyLfuCache cache = new TinyLfuCache(10_000, FILE_SIZE, true);
+        cache.put("PLAN/1/index.html", new byte[]{1, 2, 3});
+
+        final ByteBuffer content = cache.get("PLAN/1/index.html");
+
+        assertThat(content.remaining(), equalTo(3));
+        assertThat(content.get(2), equalTo((byte) 3));
+        assertThat(cache.get("PLAN/1/app.js"), nullValue());
+        assertThat(cache.getStats().getHitRate(), equalTo(0.5));
+    }
+
+    @Test
+    public void itShouldKeepWithinBudget() {
+        final TinyLfuCache cache = new TinyLfuCache(10_000, FILE_SIZE, false);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("PLAN/1/data/" + i);
+            cache.put("PLAN/1/data/" + i, new byte[FILE_SIZE]);
+        }
+
+        assertThat(cache.getStats().getBytes(), lessThan(10_001L));
+    }
+
+    @Test
+    public void itShouldKeepPopularFilesDuringScan() {
+        final TinyLfuCache cache = new TinyLfuCache(10_000, FILE_SIZE, false);
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 5; j++) {
+                cache.get("PLAN/1/widgets/" + i);
+            }
+            cache.put("PLAN/1/widgets/" + i, new byte[FILE_SIZE]);
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.get("PLAN/2/data/attachments/" + i);
+            cache.put("PLAN/2/data/attachments/" + i, new byte[FILE_SIZE]);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(cache.get("PLAN/1/widgets/" + i), not(nullValue()));
+        }
+    }
+
+    @Test
+    public void itShouldInvalidateFilesOfReport() {
+        final TinyLfuCache cache = new TinyLfuCache(10_000, FILE_SIZE, false);
+        cache.put("PLAN/1/index.html", new byte[FILE_SIZE]);
+        cache.put("PLAN/2/index.html", new byte[FILE_SIZE]);
+
+        cache.invalidateIf(key -> key.startsWith("PLAN/1/"));
+
+        assertThat(cache.get("PLAN/1/index.html"), nullValue());
+        assertThat(cache.get("PLAN/2/index.html"), not(nullValue()));
+    }
+}